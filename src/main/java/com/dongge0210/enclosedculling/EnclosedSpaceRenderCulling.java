@@ -2,6 +2,7 @@ package com.dongge0210.enclosedculling;
 
 import com.dongge0210.enclosedculling.config.ModConfig;
 import com.dongge0210.enclosedculling.culling.SpaceCullingManager;
+import com.dongge0210.enclosedculling.culling.TransparencyTable;
 import com.dongge0210.enclosedculling.compat.CreateCompatInit;
 import com.dongge0210.enclosedculling.compat.EntityCullingCompatibility;
 import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
@@ -62,6 +63,13 @@ public class EnclosedSpaceRenderCulling {
                 LOGGER.warn("Failed to initialize compatibility systems: {}", e.getMessage());
             }
             
+            // 注册表此时已冻结，预先构建方块透明度表
+            try {
+                TransparencyTable.rebuild();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to build transparency table: {}", e.getMessage());
+            }
+            
             // 初始化热重载系统
             try {
                 com.dongge0210.enclosedculling.hotswap.HotReloadManager.initialize();
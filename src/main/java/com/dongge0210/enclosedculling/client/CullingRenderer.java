@@ -5,14 +5,16 @@ import com.dongge0210.enclosedculling.compat.EntityCullingCompatibility;
 import com.dongge0210.enclosedculling.client.gpu.FrustumCuller;
 import com.dongge0210.enclosedculling.client.gpu.LODManager;
 import com.dongge0210.enclosedculling.client.gpu.BatchRenderer;
+import com.dongge0210.enclosedculling.culling.CacheInvalidationBus;
+import com.dongge0210.enclosedculling.culling.PassabilityCache;
+import com.dongge0210.enclosedculling.culling.VoxelRaycast;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.Vec3;
 import net.minecraft.world.entity.Entity;
 
-import java.util.*;
-
 /**
  * 渲染剔除器 - 负责判断方块位置是否被遮挡
  * 通过房间系统和视线检测来优化渲染性能
@@ -29,13 +31,53 @@ public class CullingRenderer {
     private static final int CHECK_RADIUS = 3;
     private static final double CLOSE_DISTANCE_THRESHOLD = 32.0; // 从16.0扩大到32.0
     
-    // === LRU缓存 ===
-    private static final LinkedHashMap<BlockPos, Boolean> occlusionCache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<BlockPos, Boolean> eldest) {
-            return size() > CACHE_SIZE;
-        }
-    };
+    // === 遮挡缓存 ===
+    // 无锁、固定容量，玩家进入新的区段时整体失效，可从工作线程读取
+    private static final OcclusionCache occlusionCache = new OcclusionCache(CACHE_SIZE);
+
+    // === 方块变化失效 ===
+    // 方块变化后待处理的位置（打包为 BlockPos.asLong），在下一次检测前统一处理
+    private static final int MAX_PENDING_INVALIDATIONS = 64;
+    private static final double LINE_INVALIDATION_DISTANCE_SQR = 1.5 * 1.5;
+    private static final long[] pendingInvalidations = new long[MAX_PENDING_INVALIDATIONS];
+    private static int pendingInvalidationCount = 0;
+    private static boolean pendingOverflow = false;
+
+    static {
+        CacheInvalidationBus.register(new CacheInvalidationBus.Listener() {
+            @Override
+            public void onBlockChanged(Level level, BlockPos pos, long sectionKey) {
+                if (level.isClientSide()) {
+                    queueInvalidation(pos);
+                }
+            }
+
+            @Override
+            public void onChunkReloaded(Level level, int chunkX, int chunkZ) {
+                if (level.isClientSide()) {
+                    removeColumn(chunkX, chunkZ);
+                }
+            }
+
+            @Override
+            public void onChunkUnloaded(Level level, int chunkX, int chunkZ) {
+                if (level.isClientSide()) {
+                    CacheInvalidationBus.recordEvicted("occlusion", removeColumn(chunkX, chunkZ));
+                    CacheInvalidationBus.recordEvicted("batch", BatchRenderer.evictChunk(chunkX, chunkZ));
+                }
+            }
+
+            @Override
+            public void onLevelUnloaded(Level level) {
+                if (level.isClientSide()) {
+                    CacheInvalidationBus.recordEvicted("occlusion", occlusionCache.size());
+                    CacheInvalidationBus.recordEvicted("batch", BatchRenderer.calculateBatchStats().totalObjects);
+                    cleanCache();
+                    BatchRenderer.clearBatches();
+                }
+            }
+        });
+    }
 
     
     // === 主要方法 ===
@@ -44,13 +86,17 @@ public class CullingRenderer {
      * 判断位置是否被遮挡（增强版 - 包含GPU优化）
      * @param world 世界实例
      * @param pos 要检查的位置
-     * @param playerPos 玩家位置
+     * @param playerPos 玩家眼睛位置（视线起点）
      * @return true 如果位置被遮挡
      */
     public static boolean isPositionOccluded(Level world, BlockPos pos, Vec3 playerPos) {
+        occlusionCache.setViewerSection(SectionPos.asLong(BlockPos.containing(playerPos)));
+        applyPendingInvalidations(playerPos);
+
         // 1. 视锥剔除检查
+        // 步骤 1-3 以及近距离判断都取决于视角或玩家的精确位置，不写入缓存；
+        // 缓存只在玩家进入新区段时失效，因此只缓存步骤 6 的包围与视线结果
         if (!FrustumCuller.isBlockInFrustum(pos)) {
-            cacheResult(pos, true);
             // 记录方块剔除统计
             com.dongge0210.enclosedculling.debug.DebugManager.recordBlockCheck(false);
             return true;
@@ -59,7 +105,6 @@ public class CullingRenderer {
         // 2. LOD检查
         LODManager.LODLevel lod = LODManager.calculateBlockLOD(pos, playerPos);
         if (lod == LODManager.LODLevel.CULLED) {
-            cacheResult(pos, true);
             // 记录方块剔除统计
             com.dongge0210.enclosedculling.debug.DebugManager.recordBlockCheck(false);
             return true;
@@ -67,28 +112,27 @@ public class CullingRenderer {
         
         // 3. 房间系统快速判断
         if (!RoomManager.isPositionVisible(world, pos, BlockPos.containing(playerPos))) {
-            cacheResult(pos, true);
             // 记录方块剔除统计
             com.dongge0210.enclosedculling.debug.DebugManager.recordBlockCheck(false);
             return true;
         }
         
-        // 4. 检查缓存
-        Boolean cached = occlusionCache.get(pos);
-        if (cached != null) {
-            // 记录方块剔除统计（缓存命中）
-            com.dongge0210.enclosedculling.debug.DebugManager.recordBlockCheck(!cached);
-            return cached;
-        }
-        
-        // 5. 近距离不剔除，确保玩家附近的物体始终可见
+        // 4. 近距离不剔除，确保玩家附近的物体始终可见
         if (pos.distSqr(BlockPos.containing(playerPos)) < CLOSE_DISTANCE_THRESHOLD) {
-            cacheResult(pos, false);
             // 记录方块剔除统计
             com.dongge0210.enclosedculling.debug.DebugManager.recordBlockCheck(true);
             return false;
         }
         
+        // 5. 检查缓存
+        int cached = occlusionCache.get(pos.asLong());
+        if (cached != OcclusionCache.MISS) {
+            boolean occluded = cached == OcclusionCache.OCCLUDED;
+            // 记录方块剔除统计（缓存命中）
+            com.dongge0210.enclosedculling.debug.DebugManager.recordBlockCheck(!occluded);
+            return occluded;
+        }
+        
         // 6. 执行详细的遮挡检测
         boolean isOccluded = checkEnclosure(world, pos) && !hasLineOfSight(world, pos, playerPos);
         cacheResult(pos, isOccluded);
@@ -124,9 +168,10 @@ public class CullingRenderer {
             center.west(CHECK_RADIUS)
         };
         
+        PassabilityCache passability = PassabilityCache.forLevel(world);
         int solidSides = 0;
         for (BlockPos checkPos : directions) {
-            if (isSolidBlock(world, checkPos)) {
+            if (!passability.isPassable(checkPos, PassabilityCache.Layer.SIGHT)) {
                 solidSides++;
             }
         }
@@ -137,74 +182,84 @@ public class CullingRenderer {
 
     
     /**
-     * 使用 Bresenham 3D 算法进行高精度视线检测
+     * 从玩家位置到目标方块中心的视线检测（体素遍历，遇到第一个遮挡即返回）
      * @param world 世界实例
      * @param target 目标位置
-     * @param playerPos 玩家位置
+     * @param playerPos 玩家眼睛位置
      * @return true 如果有视线
      */
     private static boolean hasLineOfSight(Level world, BlockPos target, Vec3 playerPos) {
-        BlockPos playerBlock = BlockPos.containing(playerPos);
-        int x1 = playerBlock.getX(), y1 = playerBlock.getY(), z1 = playerBlock.getZ();
-        int x2 = target.getX(), y2 = target.getY(), z2 = target.getZ();
-        
-        int dx = Math.abs(x2 - x1);
-        int dy = Math.abs(y2 - y1);
-        int dz = Math.abs(z2 - z1);
-        int xs = x1 < x2 ? 1 : -1;
-        int ys = y1 < y2 ? 1 : -1;
-        int zs = z1 < z2 ? 1 : -1;
+        return VoxelRaycast.isClear(PassabilityCache.forLevel(world), PassabilityCache.Layer.SIGHT,
+            playerPos.x, playerPos.y, playerPos.z, target.getX() + 0.5, target.getY() + 0.5, target.getZ() + 0.5);
+    }
 
-        int n = 1 + dx + dy + dz;
-        int x = x1, y = y1, z = z1;
-        int err_1 = dx - dy, err_2 = dx - dz;
+    
+    private static void queueInvalidation(BlockPos pos) {
+        if (pendingInvalidationCount < MAX_PENDING_INVALIDATIONS) {
+            pendingInvalidations[pendingInvalidationCount++] = pos.asLong();
+        } else {
+            // 大量方块同时变化（爆炸、填充命令等）时直接清空
+            pendingOverflow = true;
+        }
+    }
 
-        for (int i = 0; i < n; ++i) {
-            // 如果路径上有实体方块，则视线被阻挡
-            if (isSolidBlock(world, new BlockPos(x, y, z))) {
-                return false;
-            }
-            
-            // Bresenham 3D 算法步进
-            if (2 * err_1 > -dy) {
-                err_1 -= dy;
-                x += xs;
-            }
-            if (2 * err_2 > -dz) {
-                err_2 -= dz;
-                x += xs;
-            }
-            if (2 * err_1 < dx) {
-                err_1 += dx;
-                y += ys;
+    /**
+     * 处理待失效的方块变化：只移除包围检测范围内的条目，以及视线经过变化方块的条目
+     */
+    private static void applyPendingInvalidations(Vec3 playerPos) {
+        if (pendingInvalidationCount == 0 && !pendingOverflow) return;
+
+        if (pendingOverflow) {
+            occlusionCache.invalidateAll();
+        } else {
+            occlusionCache.removeIf(target -> isAffectedByPendingChange(target, playerPos));
+        }
+        pendingInvalidationCount = 0;
+        pendingOverflow = false;
+    }
+
+    private static boolean isAffectedByPendingChange(long target, Vec3 playerPos) {
+        int targetX = BlockPos.getX(target), targetY = BlockPos.getY(target), targetZ = BlockPos.getZ(target);
+        double tx = targetX + 0.5, ty = targetY + 0.5, tz = targetZ + 0.5;
+        for (int i = 0; i < pendingInvalidationCount; i++) {
+            long changed = pendingInvalidations[i];
+            int cx = BlockPos.getX(changed), cy = BlockPos.getY(changed), cz = BlockPos.getZ(changed);
+            // checkEnclosure 读取的方块
+            if (Math.abs(cx - targetX) <= CHECK_RADIUS && Math.abs(cy - targetY) <= CHECK_RADIUS
+                && Math.abs(cz - targetZ) <= CHECK_RADIUS) {
+                return true;
             }
-            if (2 * err_2 < dx) {
-                err_2 += dx;
-                z += zs;
+            if (distanceToSegmentSqr(cx + 0.5, cy + 0.5, cz + 0.5, playerPos.x, playerPos.y, playerPos.z, tx, ty, tz)
+                <= LINE_INVALIDATION_DISTANCE_SQR) {
+                return true;
             }
         }
-        return true;
+        return false;
     }
 
-    
-    /**
-     * 判断方块是否为实体方块
-     * @param world 世界实例
-     * @param pos 方块位置
-     * @return true 如果是实体方块
-     */
-    private static boolean isSolidBlock(Level world, BlockPos pos) {
-        BlockState state = world.getBlockState(pos);
-        return !state.isAir() && state.isSolidRender(world, pos);
+    private static double distanceToSegmentSqr(double px, double py, double pz,
+                                               double ax, double ay, double az,
+                                               double bx, double by, double bz) {
+        double abx = bx - ax, aby = by - ay, abz = bz - az;
+        double lengthSqr = abx * abx + aby * aby + abz * abz;
+        double t = lengthSqr > 0 ? ((px - ax) * abx + (py - ay) * aby + (pz - az) * abz) / lengthSqr : 0;
+        t = Math.max(0, Math.min(1, t));
+        double dx = ax + abx * t - px, dy = ay + aby * t - py, dz = az + abz * t - pz;
+        return dx * dx + dy * dy + dz * dz;
     }
-    
+
+    // @return 移除的条目数
+    private static int removeColumn(int chunkX, int chunkZ) {
+        return occlusionCache.removeIf(p -> (BlockPos.getX(p) >> 4) == chunkX && (BlockPos.getZ(p) >> 4) == chunkZ);
+    }
+
     /**
      * 缓存遮挡检测结果
      * @param pos 位置
      * @param result 检测结果
      */
     private static void cacheResult(BlockPos pos, boolean result) {
-        occlusionCache.put(pos.immutable(), result);
+        occlusionCache.put(pos.asLong(), result);
     }
     
     // === 公共工具方法 ===
@@ -213,7 +268,9 @@ public class CullingRenderer {
      * 清理遮挡缓存
      */
     public static void cleanCache() {
-        occlusionCache.clear();
+        occlusionCache.invalidateAll();
+        pendingInvalidationCount = 0;
+        pendingOverflow = false;
     }
     
     /**
@@ -274,7 +331,7 @@ public class CullingRenderer {
         info.append("  EntityCulling Detected: ").append(EntityCullingCompatibility.isEntityCullingDetected()).append("\n");
         info.append("  Entity Culling: ").append(EntityCullingCompatibility.shouldSkipEntityCulling() ? "DELEGATED" : "ACTIVE").append("\n");
         info.append("  Block Culling: ACTIVE\n");
-        info.append("  Cache Size: ").append(occlusionCache.size()).append("/").append(CACHE_SIZE).append("\n");
+        info.append("  Cache Size: ").append(occlusionCache.size()).append("/").append(occlusionCache.capacity()).append("\n");
         info.append("  ").append(FrustumCuller.getFrustumInfo()).append("\n");
         info.append("  ").append(LODManager.getLODInfo()).append("\n");
         info.append("  ").append(BatchRenderer.getBatchInfo());
@@ -0,0 +1,179 @@
+package com.dongge0210.enclosedculling.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongPredicate;
+
+/**
+ * 遮挡结果缓存 - 键为打包的方块坐标（BlockPos.asLong），值为可见/遮挡，容量固定、无锁，可从工作线程读取
+ *
+ * 表按 8 路组相联组织：键哈希到一组 8 个槽，组内用 CLOCK（二次机会）淘汰，命中时只设置引用位。
+ * 每个条目带有写入时的代数，观察者进入新的区段或整体清空时只需递增代数，旧条目即全部失效（O(1)），
+ * 之后由淘汰自然覆盖。
+ *
+ * 每个槽的元数据字打包了代数、值、写入版本和写锁位：写入方先以 CAS 加锁，再写键和新的元数据；
+ * 读取方在读键前后各读一次元数据，两次不同或处于加锁状态时按未命中处理，因此不会读到撕裂的条目。
+ * 写入版本每次写入递增，同一槽反复改写也不会出现 ABA
+ */
+final class OcclusionCache {
+    static final int MISS = 0;
+    static final int VISIBLE = 1;
+    static final int OCCLUDED = 2;
+
+    private static final int WAYS = 8;
+
+    // 元数据布局：[代数 32 位][值 2 位][写入版本 29 位][写锁 1 位]
+    private static final long LOCK = 1L;
+    private static final long VERSION_UNIT = 1L << 1;
+    private static final long VERSION_MASK = ((1L << 29) - 1) << 1;
+    private static final int VALUE_SHIFT = 30;
+    private static final int GENERATION_SHIFT = 32;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray meta;
+    // 引用位和每组的时钟指针只是淘汰提示，允许竞争写入
+    private final byte[] referenced;
+    private final byte[] hands;
+    private final int setMask;
+
+    private final AtomicInteger generation = new AtomicInteger(1);
+    private volatile long viewerSection = Long.MIN_VALUE;
+
+    OcclusionCache(int capacity) {
+        // 组数向上取 2 的幂，至少一组
+        int wanted = Math.max(1, capacity / WAYS);
+        int sets = wanted == 1 ? 1 : Integer.highestOneBit(wanted - 1) << 1;
+        keys = new AtomicLongArray(sets * WAYS);
+        meta = new AtomicLongArray(sets * WAYS);
+        referenced = new byte[sets * WAYS];
+        hands = new byte[sets];
+        setMask = sets - 1;
+    }
+
+    /**
+     * 观察者所在区段（SectionPos.asLong），与上次不同时使全部条目失效
+     */
+    void setViewerSection(long sectionKey) {
+        if (sectionKey != viewerSection) {
+            viewerSection = sectionKey;
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * 使全部条目失效
+     */
+    void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return VISIBLE、OCCLUDED，或没有当前代数的条目时为 MISS
+     */
+    int get(long key) {
+        int current = generation.get();
+        int base = setOf(key) * WAYS;
+        for (int slot = base; slot < base + WAYS; slot++) {
+            long before = meta.get(slot);
+            if ((before & LOCK) != 0 || generationOf(before) != current) continue;
+            if (keys.get(slot) != key) continue;
+            if (meta.get(slot) != before) return MISS;
+            if (referenced[slot] == 0) referenced[slot] = 1;
+            return valueOf(before);
+        }
+        return MISS;
+    }
+
+    void put(long key, boolean occluded) {
+        int current = generation.get();
+        int set = setOf(key);
+        int base = set * WAYS;
+        int victim = -1;
+        for (int slot = base; slot < base + WAYS; slot++) {
+            long m = meta.get(slot);
+            if (keys.get(slot) == key || generationOf(m) != current || valueOf(m) == MISS) {
+                // 同一个键、失效或空的槽优先
+                victim = slot;
+                if (keys.get(slot) == key) break;
+            }
+        }
+        if (victim < 0) {
+            victim = clockVictim(set, base);
+        }
+        write(victim, key, current, occluded ? OCCLUDED : VISIBLE);
+    }
+
+    /**
+     * 移除满足条件的当前条目
+     * @return 移除的条目数
+     */
+    int removeIf(LongPredicate predicate) {
+        int current = generation.get();
+        int removed = 0;
+        for (int slot = 0; slot < meta.length(); slot++) {
+            long m = meta.get(slot);
+            if ((m & LOCK) != 0 || generationOf(m) != current || valueOf(m) == MISS) continue;
+            if (predicate.test(keys.get(slot)) && write(slot, keys.get(slot), current, MISS)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 当前代数的条目数（遍历整张表，只用于统计）
+     */
+    int size() {
+        int current = generation.get();
+        int count = 0;
+        for (int slot = 0; slot < meta.length(); slot++) {
+            long m = meta.get(slot);
+            if (generationOf(m) == current && valueOf(m) != MISS) count++;
+        }
+        return count;
+    }
+
+    int capacity() {
+        return meta.length();
+    }
+
+    // 组内 CLOCK：从指针处开始，跳过并清除引用位已设置的槽，第一个未被引用的槽即被淘汰
+    private int clockVictim(int set, int base) {
+        int hand = hands[set] & (WAYS - 1);
+        for (int i = 0; i < WAYS * 2; i++) {
+            int slot = base + hand;
+            hand = (hand + 1) & (WAYS - 1);
+            if (referenced[slot] == 0) {
+                hands[set] = (byte) hand;
+                return slot;
+            }
+            referenced[slot] = 0;
+        }
+        hands[set] = (byte) hand;
+        return base + hand;
+    }
+
+    // 加锁写入一个槽；其他线程正在写入该槽时放弃（缓存允许丢失写入）
+    private boolean write(int slot, long key, int stamp, int value) {
+        long old = meta.get(slot);
+        if ((old & LOCK) != 0 || !meta.compareAndSet(slot, old, old | LOCK)) return false;
+        keys.set(slot, key);
+        referenced[slot] = 0;
+        long version = (old + VERSION_UNIT) & VERSION_MASK;
+        meta.set(slot, ((long) stamp << GENERATION_SHIFT) | ((long) value << VALUE_SHIFT) | version);
+        return true;
+    }
+
+    private int setOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & setMask;
+    }
+
+    private static int generationOf(long meta) {
+        return (int) (meta >>> GENERATION_SHIFT);
+    }
+
+    private static int valueOf(long meta) {
+        return (int) (meta >>> VALUE_SHIFT) & 3;
+    }
+}
@@ -318,6 +318,25 @@ public class BatchRenderer {
         }
     }
     
+    /**
+     * 区块卸载时移除该区块的全部批次
+     * @return 移除的对象数
+     */
+    public static int evictChunk(int chunkX, int chunkZ) {
+        int removed = 0;
+        Iterator<Map.Entry<BatchKey, RenderBatch>> iterator = renderBatches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BatchKey, RenderBatch> entry = iterator.next();
+            if (entry.getKey().chunkX == chunkX && entry.getKey().chunkZ == chunkZ) {
+                removed += entry.getValue().size();
+                iterator.remove();
+            }
+        }
+        blockBatches.values().forEach(list -> list.removeIf(p -> (p.getX() >> 4) == chunkX && (p.getZ() >> 4) == chunkZ));
+        blockBatches.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+        return removed;
+    }
+    
     /**
      * 清空所有批次
      */
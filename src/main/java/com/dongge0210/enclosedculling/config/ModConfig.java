@@ -4,6 +4,8 @@ import net.minecraftforge.common.ForgeConfigSpec;
 import net.minecraftforge.eventbus.api.IEventBus;
 import org.apache.commons.lang3.tuple.Pair;
 
+import java.util.List;
+
 public class ModConfig {
     public static final ForgeConfigSpec COMMON_SPEC;
     public static final Common COMMON;
@@ -51,6 +53,14 @@ public class ModConfig {
         public final ForgeConfigSpec.IntValue maxCullingChecksPerTick;
         public final ForgeConfigSpec.DoubleValue cullingCheckTimeLimit;
         
+        // 被遮挡实体的降频tick
+        public final ForgeConfigSpec.BooleanValue enableTickLod;
+        public final ForgeConfigSpec.DoubleValue occludedNearDistance;
+        public final ForgeConfigSpec.IntValue occludedNearInterval;
+        public final ForgeConfigSpec.IntValue occludedFarInterval;
+        public final ForgeConfigSpec.BooleanValue enableDormantBlockEntities;
+        public final ForgeConfigSpec.ConfigValue<List<? extends String>> dormantBlockEntityTypes;
+        
         // 兼容性选项
         public final ForgeConfigSpec.BooleanValue showCompatibilityWarnings;
         public final ForgeConfigSpec.BooleanValue autoDisableConflictingFeatures;
@@ -85,8 +95,19 @@ public class ModConfig {
             builder.pop();
             
             builder.comment("性能优化设置").push("performance");
-            maxCullingChecksPerTick = builder.comment("每tick最大剔除检查数").defineInRange("maxCullingChecksPerTick", 100, 10, 1000);
-            cullingCheckTimeLimit = builder.comment("剔除检查时间限制（毫秒）").defineInRange("cullingCheckTimeLimit", 5.0, 0.1, 50.0);
+            maxCullingChecksPerTick = builder.comment("每tick/每帧最大剔除检查数（一次检查约为64个泛洪步骤或构建一个区段）").defineInRange("maxCullingChecksPerTick", 100, 10, 1000);
+            cullingCheckTimeLimit = builder.comment("每tick/每帧剔除检查时间限制（毫秒），超出后暂停并在下一tick/帧继续").defineInRange("cullingCheckTimeLimit", 5.0, 0.1, 50.0);
+            builder.pop();
+            
+            builder.comment("被遮挡实体的降频tick（可见实体每tick执行，被遮挡的实体按距离降低频率）").push("tickLod");
+            enableTickLod = builder.comment("是否对玩家不可见房间中的实体降频tick").define("enableTickLod", true);
+            occludedNearDistance = builder.comment("被遮挡实体与最近玩家的距离不超过该值（方块）时使用近距离间隔").defineInRange("occludedNearDistance", 32.0, 4.0, 128.0);
+            occludedNearInterval = builder.comment("近距离被遮挡实体每隔多少tick执行一次").defineInRange("occludedNearInterval", 4, 1, 40);
+            occludedFarInterval = builder.comment("远距离被遮挡实体每隔多少tick执行一次").defineInRange("occludedFarInterval", 20, 1, 200);
+            enableDormantBlockEntities = builder.comment("是否让玩家不可见房间中的方块实体休眠（移出世界的tick列表，房间可见时恢复）",
+                    "休眠的机器在此期间完全停止工作，默认关闭，确认所列模组的机器可以暂停后再开启").define("enableDormantBlockEntities", false);
+            dormantBlockEntityTypes = builder.comment("可以休眠的方块实体类型：模组ID（如 create）或完整的类型ID（如 create:mechanical_press）")
+                    .defineList("dormantBlockEntityTypes", List.of("create", "mekanism", "thermal"), o -> o instanceof String);
             builder.pop();
             
             builder.comment("兼容性设置").push("compatibility");
@@ -0,0 +1,211 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraftforge.event.level.BlockEvent;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存失效总线 - 汇总客户端和服务端的方块变化与区块加载/卸载，通知各个剔除缓存只失效受影响的条目
+ *
+ * 方块变化来自 LevelMixin（Level.setBlock 成功返回后，服务端同步到客户端的方块更新也经过这里）；
+ * Mixin 没有生效时退回 Forge 的 NeighborNotifyEvent / BreakEvent / EntityPlaceEvent，覆盖大部分方块变化。
+ * 区块数据整体替换来自 ChunkEvent.Load（只处理完整的 LevelChunk），区块和世界卸载来自 ChunkEvent.Unload / LevelEvent.Unload。
+ * 监听器在方块变化所在世界的线程上被调用；卸载时释放的条目数通过 recordEvicted 汇总，供统计信息显示
+ */
+@Mod.EventBusSubscriber(modid = EnclosedSpaceRenderCulling.MODID)
+public class CacheInvalidationBus {
+
+    /**
+     * 缓存失效监听器
+     */
+    public interface Listener {
+        /**
+         * @param pos        发生变化的方块
+         * @param sectionKey 所在区段（SectionPos.asLong）
+         */
+        void onBlockChanged(Level level, BlockPos pos, long sectionKey);
+
+        /**
+         * 整个区块列的数据被替换（加载或重新同步）
+         */
+        default void onChunkReloaded(Level level, int chunkX, int chunkZ) {
+        }
+
+        /**
+         * 区块列被卸载，属于该列的条目应被释放
+         */
+        default void onChunkUnloaded(Level level, int chunkX, int chunkZ) {
+        }
+
+        /**
+         * 整个世界被卸载（退出存档或切换维度）
+         */
+        default void onLevelUnloaded(Level level) {
+        }
+    }
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    // 缓存名称 -> 卸载时累计释放的条目数
+    private static final Map<String, AtomicLong> EVICTED = new ConcurrentSkipListMap<>();
+    // LevelMixin 第一次回调后置位，之后 Forge 方块事件不再重复通知
+    private static volatile boolean mixinActive;
+
+    static {
+        // 可通过性位图是其他缓存的基础，始终第一个失效
+        LISTENERS.add(new Listener() {
+            @Override
+            public void onBlockChanged(Level level, BlockPos pos, long sectionKey) {
+                PassabilityCache.onBlockChanged(level, pos);
+            }
+
+            @Override
+            public void onChunkReloaded(Level level, int chunkX, int chunkZ) {
+                PassabilityCache.onChunkReloaded(level, chunkX, chunkZ);
+            }
+
+            @Override
+            public void onChunkUnloaded(Level level, int chunkX, int chunkZ) {
+                PassabilityCache.onChunkReloaded(level, chunkX, chunkZ);
+            }
+        });
+    }
+
+    public static void register(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void unregister(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 由 LevelMixin 在方块成功改变后调用
+     */
+    public static void blockChanged(Level level, BlockPos pos) {
+        mixinActive = true;
+        notifyBlockChanged(level, pos);
+    }
+
+    private static void notifyBlockChanged(Level level, BlockPos pos) {
+        long sectionKey = SectionPos.asLong(pos);
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.onBlockChanged(level, pos, sectionKey);
+            } catch (Exception e) {
+                EnclosedSpaceRenderCulling.LOGGER.debug("Cache invalidation failed at {}: {}", pos, e.getMessage());
+            }
+        }
+    }
+
+    public static void chunkReloaded(Level level, int chunkX, int chunkZ) {
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.onChunkReloaded(level, chunkX, chunkZ);
+            } catch (Exception e) {
+                EnclosedSpaceRenderCulling.LOGGER.debug("Cache invalidation failed for chunk [{}, {}]: {}", chunkX, chunkZ, e.getMessage());
+            }
+        }
+    }
+
+    public static void chunkUnloaded(Level level, int chunkX, int chunkZ) {
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.onChunkUnloaded(level, chunkX, chunkZ);
+            } catch (Exception e) {
+                EnclosedSpaceRenderCulling.LOGGER.debug("Cache eviction failed for chunk [{}, {}]: {}", chunkX, chunkZ, e.getMessage());
+            }
+        }
+    }
+
+    public static void levelUnloaded(Level level) {
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.onLevelUnloaded(level);
+            } catch (Exception e) {
+                EnclosedSpaceRenderCulling.LOGGER.debug("Cache eviction failed for level {}: {}", level.dimension().location(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 记录卸载时释放的条目数
+     */
+    public static void recordEvicted(String cacheName, long count) {
+        if (count > 0) {
+            EVICTED.computeIfAbsent(cacheName, k -> new AtomicLong()).addAndGet(count);
+        }
+    }
+
+    /**
+     * @return 例如 "occlusion=120, rooms=3"，没有释放过任何条目时为 "无"
+     */
+    public static String getEvictionSummary() {
+        if (EVICTED.isEmpty()) return "无";
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, AtomicLong> entry : EVICTED.entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(entry.getKey()).append('=').append(entry.getValue().get());
+        }
+        return sb.toString();
+    }
+
+    // --- Mixin 未生效时的方块变化后备 ---
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        if (!mixinActive && event.getLevel() instanceof Level level) {
+            notifyBlockChanged(level, event.getPos());
+        }
+    }
+
+    // 破坏事件在方块改变之前触发，被取消时不会收到
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onBlockBreak(BlockEvent.BreakEvent event) {
+        if (!mixinActive && event.getLevel() instanceof Level level) {
+            notifyBlockChanged(level, event.getPos());
+        }
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onBlockPlace(BlockEvent.EntityPlaceEvent event) {
+        if (!mixinActive && event.getLevel() instanceof Level level) {
+            notifyBlockChanged(level, event.getPos());
+        }
+    }
+
+    // 世界生成中的 ProtoChunk 不是已加载的区块，忽略
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getLevel() instanceof Level level && event.getChunk() instanceof LevelChunk) {
+            chunkReloaded(level, event.getChunk().getPos().x, event.getChunk().getPos().z);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onChunkUnload(ChunkEvent.Unload event) {
+        if (event.getLevel() instanceof Level level && event.getChunk() instanceof LevelChunk) {
+            chunkUnloaded(level, event.getChunk().getPos().x, event.getChunk().getPos().z);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof Level level) {
+            levelUnloaded(level);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 区段可通过性缓存 - 将每个 16³ 的 LevelChunkSection 转换为 4096 位的"可通过"位图
+ * 房间检测、泛洪填充和视线检测读取位图，而不是逐个体素调用 Level.getBlockState
+ *
+ * 位图按区段坐标（SectionPos.asLong）缓存，方块变化时由 CacheInvalidationBus 通知失效，
+ * 区块重新加载时整列失效。位图创建后不再修改，可以安全地跨线程读取
+ */
+@Mod.EventBusSubscriber(modid = EnclosedSpaceRenderCulling.MODID)
+public class PassabilityCache {
+
+    /**
+     * 可通过性判定层 - 不同算法对"可通过"的定义不同，每层一份位图
+     */
+    public enum Layer {
+        SPACE(TransparencyTable.SPACE),  // 空间泛洪：空气、透明方块、液体等
+        ROOM(TransparencyTable.ROOM),    // 房间检测：由 RoomManager 的透明判定决定
+        SIGHT(TransparencyTable.SIGHT);  // 视线检测：非完整实体渲染的方块
+
+        private final int bit;
+        private final int wordOffset = ordinal() * WORDS_PER_LAYER;
+
+        Layer(int bit) {
+            this.bit = bit;
+        }
+    }
+
+    private static final int WORDS_PER_LAYER = 4096 / 64;
+    private static final int LAYER_COUNT = Layer.values().length;
+    // 位图末尾附加两个字：SPACE 层的六面连通掩码（SectionConnectivity），以及各层的整体概要
+    private static final int CONNECTIVITY_WORD = WORDS_PER_LAYER * LAYER_COUNT;
+    private static final int SUMMARY_WORD = CONNECTIVITY_WORD + 1;
+    private static final int SECTION_WORDS = SUMMARY_WORD + 1;
+
+    /**
+     * 区段在某一层的整体概要，供分层视线遍历整段跳过或整段判定
+     */
+    static final int SUMMARY_MIXED = 0;
+    static final int SUMMARY_PASSABLE = 1;  // 4096 个体素全部可通过
+    static final int SUMMARY_OPAQUE = 2;    // 4096 个体素全部不可通过
+    // 概要字中各层概要之后的一位：区段内有打开的门类方块，门连通检查只在这些区段读取方块状态
+    private static final long OPEN_DOOR_SUMMARY = 1L << (LAYER_COUNT * 2);
+
+    // 全空气区段、未加载区块和世界高度外均视为完全可通过（与 getBlockState 返回空气一致）；
+    // 区段快照范围之外和尚未构建的区段同样按此处理
+    static final long[] ALL_PASSABLE = createFilled();
+
+    private static final Map<Level, PassabilityCache> INSTANCES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Level level;
+    private final Map<Long, long[]> sections = new ConcurrentHashMap<>();
+    // 位图构建或失效时递增，供区段可见性图判断是否需要重新遍历
+    private final AtomicInteger modificationCount = new AtomicInteger();
+
+    private PassabilityCache(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * 获取指定世界的可通过性缓存（客户端与服务端世界各自独立）
+     */
+    public static PassabilityCache forLevel(Level level) {
+        return INSTANCES.computeIfAbsent(level, PassabilityCache::new);
+    }
+
+    // === 查询 ===
+
+    /**
+     * 判断方块坐标在指定层是否可通过
+     */
+    public boolean isPassable(int x, int y, int z, Layer layer) {
+        long[] bits = getSectionBits(SectionPos.blockToSectionCoord(x),
+            SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z));
+        return testBit(bits, x, y, z, layer);
+    }
+
+    public boolean isPassable(BlockPos pos, Layer layer) {
+        return isPassable(pos.getX(), pos.getY(), pos.getZ(), layer);
+    }
+
+    /**
+     * 获取区段位图，没有缓存时从区块数据构建
+     */
+    long[] getSectionBits(int sectionX, int sectionY, int sectionZ) {
+        if (sectionY < level.getMinSection() || sectionY >= level.getMaxSection()) {
+            return ALL_PASSABLE;
+        }
+
+        long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+        long[] bits = sections.get(key);
+        if (bits != null) return bits;
+
+        LevelChunk chunk = level.getChunkSource().getChunkNow(sectionX, sectionZ);
+        if (chunk == null) {
+            // 区块未加载时不缓存，等区块加载后再构建
+            return ALL_PASSABLE;
+        }
+
+        LevelChunkSection section = chunk.getSection(level.getSectionIndexFromSectionY(sectionY));
+        bits = buildSection(section);
+        sections.put(key, bits);
+        modificationCount.incrementAndGet();
+        return bits;
+    }
+
+    /**
+     * 只读取已缓存的位图，不访问区块数据，可在任意线程调用；没有缓存时返回 null
+     */
+    long[] getCachedSectionBits(int sectionX, int sectionY, int sectionZ) {
+        if (sectionY < level.getMinSection() || sectionY >= level.getMaxSection()) {
+            return ALL_PASSABLE;
+        }
+        return sections.get(SectionPos.asLong(sectionX, sectionY, sectionZ));
+    }
+
+    /**
+     * 区段在指定层的位图指纹（64 位哈希），用于判断持久化的分析结果是否仍与方块数据一致
+     * 区块未加载时按完全可通过计算，调用方应先确认区块已加载
+     */
+    public long getLayerStamp(int sectionX, int sectionY, int sectionZ, Layer layer) {
+        long[] bits = getSectionBits(sectionX, sectionY, sectionZ);
+        long hash = 0xCBF29CE484222325L;
+        for (int word = layer.wordOffset, end = word + WORDS_PER_LAYER; word < end; word++) {
+            hash = (hash ^ bits[word]) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * 区段在 SPACE 层的六面连通掩码
+     */
+    static long connectivity(long[] bits) {
+        return bits[CONNECTIVITY_WORD];
+    }
+
+    /**
+     * 区段在指定层的整体概要（SUMMARY_PASSABLE / SUMMARY_OPAQUE / SUMMARY_MIXED），构建位图时计算
+     */
+    static int summary(long[] bits, Layer layer) {
+        return (int) (bits[SUMMARY_WORD] >>> (layer.ordinal() * 2)) & 3;
+    }
+
+    /**
+     * 区段内是否有打开的门类方块（TransparencyTable.OPEN_DOOR），没有缓存时从区块数据构建
+     */
+    public boolean hasOpenDoor(int sectionX, int sectionY, int sectionZ) {
+        return (getSectionBits(sectionX, sectionY, sectionZ)[SUMMARY_WORD] & OPEN_DOOR_SUMMARY) != 0;
+    }
+
+    /**
+     * 不触发构建地查看当前位图，缓存被失效且区块已加载时返回 null
+     */
+    long[] peekSectionBits(int sectionX, int sectionY, int sectionZ) {
+        if (sectionY < level.getMinSection() || sectionY >= level.getMaxSection()) {
+            return ALL_PASSABLE;
+        }
+        long[] bits = sections.get(SectionPos.asLong(sectionX, sectionY, sectionZ));
+        if (bits != null) return bits;
+        return level.getChunkSource().getChunkNow(sectionX, sectionZ) == null ? ALL_PASSABLE : null;
+    }
+
+    /**
+     * 创建单线程使用的查询视图，缓存最近访问的区段以减少哈希查找
+     */
+    public View view(Layer layer) {
+        return new View(layer, null);
+    }
+
+    /**
+     * 创建会把读取过的区段记录到 dependencies 的视图，用于之后判断结果所依赖的方块是否发生变化
+     */
+    public View trackingView(Layer layer, SectionDependencies dependencies) {
+        return new View(layer, dependencies);
+    }
+
+    // === 失效 ===
+
+    /**
+     * 方块变化时调用，使所在区段的位图失效
+     */
+    public void invalidateBlock(BlockPos pos) {
+        if (sections.remove(SectionPos.asLong(pos)) != null) {
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 使整列区段失效（区块加载或重新同步时）
+     */
+    public void invalidateColumn(int chunkX, int chunkZ) {
+        for (int sectionY = level.getMinSection(); sectionY < level.getMaxSection(); sectionY++) {
+            sections.remove(SectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+        modificationCount.incrementAndGet();
+    }
+
+    public void clear() {
+        sections.clear();
+        modificationCount.incrementAndGet();
+    }
+
+    public int getModificationCount() {
+        return modificationCount.get();
+    }
+
+    public int getCachedSectionCount() {
+        return sections.size();
+    }
+
+    /**
+     * 使所有世界的位图失效（透明判定规则变化时）
+     */
+    public static void invalidateAll() {
+        synchronized (INSTANCES) {
+            for (PassabilityCache cache : INSTANCES.values()) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * 方块成功改变后由 CacheInvalidationBus 调用
+     */
+    public static void onBlockChanged(Level level, BlockPos pos) {
+        PassabilityCache cache = INSTANCES.get(level);
+        if (cache != null) {
+            cache.invalidateBlock(pos);
+        }
+    }
+
+    /**
+     * 区块加载或重新同步时调用
+     */
+    public static void onChunkReloaded(Level level, int chunkX, int chunkZ) {
+        PassabilityCache cache = INSTANCES.get(level);
+        if (cache != null) {
+            cache.invalidateColumn(chunkX, chunkZ);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof Level level) {
+            INSTANCES.remove(level);
+        }
+    }
+
+    // === 构建 ===
+
+    private long[] buildSection(LevelChunkSection section) {
+        if (section.hasOnlyAir()) {
+            return ALL_PASSABLE;
+        }
+
+        long[] bits = new long[SECTION_WORDS];
+
+        // 相邻体素通常是同一状态，记住上一个状态的判定结果以省去ID查找
+        BlockState lastState = null;
+        int lastFlags = 0;
+        boolean openDoor = false;
+
+        for (int index = 0; index < 4096; index++) {
+            int x = index & 15;
+            int z = (index >> 4) & 15;
+            int y = index >> 8;
+            BlockState state = section.getBlockState(x, y, z);
+            if (state != lastState) {
+                lastState = state;
+                lastFlags = TransparencyTable.flags(state);
+            }
+            if (lastFlags == 0) continue;
+            openDoor |= (lastFlags & TransparencyTable.OPEN_DOOR) != 0;
+
+            int word = index >>> 6;
+            long mask = 1L << (index & 63);
+            for (Layer layer : Layer.values()) {
+                if ((lastFlags & layer.bit) != 0) {
+                    bits[layer.wordOffset + word] |= mask;
+                }
+            }
+        }
+        bits[CONNECTIVITY_WORD] = SectionConnectivity.compute(bits, Layer.SPACE.wordOffset);
+        long summary = 0;
+        for (Layer layer : Layer.values()) {
+            long any = 0, all = -1L;
+            for (int word = layer.wordOffset, end = word + WORDS_PER_LAYER; word < end; word++) {
+                any |= bits[word];
+                all &= bits[word];
+            }
+            int value = all == -1L ? SUMMARY_PASSABLE : any == 0 ? SUMMARY_OPAQUE : SUMMARY_MIXED;
+            summary |= (long) value << (layer.ordinal() * 2);
+        }
+        if (openDoor) summary |= OPEN_DOOR_SUMMARY;
+        bits[SUMMARY_WORD] = summary;
+        return bits;
+    }
+
+    private static long[] createFilled() {
+        long[] bits = new long[SECTION_WORDS];
+        Arrays.fill(bits, -1L);
+        bits[SUMMARY_WORD] = uniformSummary(SUMMARY_PASSABLE);
+        return bits;
+    }
+
+    private static long uniformSummary(int value) {
+        long summary = 0;
+        for (int layer = 0; layer < LAYER_COUNT; layer++) {
+            summary |= (long) value << (layer * 2);
+        }
+        return summary;
+    }
+
+    static boolean testBit(long[] bits, int x, int y, int z, Layer layer) {
+        int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        return (bits[layer.wordOffset + (index >>> 6)] & (1L << (index & 63))) != 0;
+    }
+
+    /**
+     * 查询视图 - 非线程安全，每次分析各自创建或在分析开始时 reset
+     */
+    public class View implements PassabilityReader {
+        private final Layer layer;
+        private final SectionDependencies dependencies;
+        private long lastKey;
+        private long[] lastBits;
+
+        private View(Layer layer, SectionDependencies dependencies) {
+            this.layer = layer;
+            this.dependencies = dependencies;
+        }
+
+        public boolean isPassable(int x, int y, int z) {
+            int sectionX = SectionPos.blockToSectionCoord(x);
+            int sectionY = SectionPos.blockToSectionCoord(y);
+            int sectionZ = SectionPos.blockToSectionCoord(z);
+            long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+            if (lastBits == null || key != lastKey) {
+                lastBits = getSectionBits(sectionX, sectionY, sectionZ);
+                lastKey = key;
+                if (dependencies != null) {
+                    dependencies.record(key, lastBits);
+                }
+            }
+            return testBit(lastBits, x, y, z, layer);
+        }
+
+        @Override
+        public boolean isPassable(long packedPos) {
+            return isPassable(BlockPos.getX(packedPos), BlockPos.getY(packedPos), BlockPos.getZ(packedPos));
+        }
+
+        /**
+         * 丢弃最近区段缓存，开始新一轮分析前调用（依赖记录由其所有者清空）
+         */
+        public void reset() {
+            lastBits = null;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.dongge0210.enclosedculling.culling;
+
+/**
+ * 单层可通过性查询 - 泛洪填充通过它读取体素，
+ * 可以是直接读取 PassabilityCache 的实时视图，也可以是后台线程使用的区段快照
+ */
+public interface PassabilityReader {
+
+    /**
+     * @param packedPos BlockPos.asLong 打包的方块坐标
+     */
+    boolean isPassable(long packedPos);
+}
@@ -0,0 +1,191 @@
+package com.dongge0210.enclosedculling.culling;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 玩家空间索引 - 每个世界每tick构建一次，供实体/方块实体tick钩子查询"最近的玩家"和"半径内是否有玩家"
+ *
+ * 玩家按 128 格见方的区块列桶（8x8 个区块列）分组，桶用开放寻址的 long 表索引，
+ * 半径 128 的查询最多访问 3x3 个桶，只对桶内玩家计算距离，与在线玩家数基本无关。
+ * 索引在当前tick第一次查询时由所属世界的线程构建（以 Level.getGameTime 判断是否过期），
+ * 构建完成后整体通过 volatile 引用发布，之后只读。与 Level.getNearestPlayer 一样不包括旁观者
+ */
+public final class PlayerGrid {
+    // 桶边长 128 格（8x8 个区块列）
+    private static final int CELL_SHIFT = 7;
+
+    private static final Map<Level, Holder> INSTANCES = new ConcurrentHashMap<>();
+
+    static {
+        CacheInvalidationBus.register(new CacheInvalidationBus.Listener() {
+            @Override
+            public void onBlockChanged(Level level, BlockPos pos, long sectionKey) {
+            }
+
+            @Override
+            public void onLevelUnloaded(Level level) {
+                INSTANCES.remove(level);
+            }
+        });
+    }
+
+    private static final class Holder {
+        volatile PlayerGrid grid;
+    }
+
+    private final long gameTime;
+    // 按桶排序后的玩家及其坐标
+    private final Player[] players;
+    private final double[] xs, ys, zs;
+    // 桶键 -> [起始下标, 数量)，线性探测，bucketCounts 为 0 表示空槽
+    private final long[] bucketKeys;
+    private final int[] bucketStarts;
+    private final int[] bucketCounts;
+    private final int bucketMask;
+
+    private PlayerGrid(long gameTime, List<? extends Player> source) {
+        this.gameTime = gameTime;
+        int count = 0;
+        Player[] candidates = new Player[source.size()];
+        long[] keys = new long[source.size()];
+        for (Player player : source) {
+            if (player.isSpectator()) continue;
+            candidates[count] = player;
+            keys[count] = cellKey(((int) Math.floor(player.getX())) >> CELL_SHIFT, ((int) Math.floor(player.getZ())) >> CELL_SHIFT);
+            count++;
+        }
+        // 按桶键排序，同一个桶的玩家连续存放
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        players = new Player[count];
+        xs = new double[count];
+        ys = new double[count];
+        zs = new double[count];
+        int capacity = Integer.highestOneBit(Math.max(4, count * 2) - 1) << 1;
+        bucketKeys = new long[capacity];
+        bucketStarts = new int[capacity];
+        bucketCounts = new int[capacity];
+        bucketMask = capacity - 1;
+        for (int i = 0; i < count; i++) {
+            Player player = candidates[order[i]];
+            players[i] = player;
+            xs[i] = player.getX();
+            ys[i] = player.getY();
+            zs[i] = player.getZ();
+            long key = keys[order[i]];
+            int slot = slotFor(key);
+            if (bucketCounts[slot] == 0) {
+                bucketKeys[slot] = key;
+                bucketStarts[slot] = i;
+            }
+            bucketCounts[slot]++;
+        }
+    }
+
+    /**
+     * 获取世界在当前tick的玩家索引，过期时重新构建
+     */
+    public static PlayerGrid forLevel(Level level) {
+        Holder holder = INSTANCES.computeIfAbsent(level, k -> new Holder());
+        PlayerGrid grid = holder.grid;
+        long now = level.getGameTime();
+        if (grid == null || grid.gameTime != now) {
+            grid = new PlayerGrid(now, level.players());
+            holder.grid = grid;
+        }
+        return grid;
+    }
+
+    /**
+     * 与 Level.getNearestPlayer(x, y, z, maxDistance, false) 相同的语义
+     * @return 距离不超过 maxDistance 的最近玩家，没有时为 null
+     */
+    public Player nearest(double x, double y, double z, double maxDistance) {
+        if (players.length == 0) return null;
+        double bestDistSq = maxDistance * maxDistance;
+        Player best = null;
+        int minCellX = ((int) Math.floor(x - maxDistance)) >> CELL_SHIFT;
+        int maxCellX = ((int) Math.floor(x + maxDistance)) >> CELL_SHIFT;
+        int minCellZ = ((int) Math.floor(z - maxDistance)) >> CELL_SHIFT;
+        int maxCellZ = ((int) Math.floor(z + maxDistance)) >> CELL_SHIFT;
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                int slot = findSlot(cellKey(cellX, cellZ));
+                if (slot < 0) continue;
+                int end = bucketStarts[slot] + bucketCounts[slot];
+                for (int i = bucketStarts[slot]; i < end; i++) {
+                    double dx = xs[i] - x, dy = ys[i] - y, dz = zs[i] - z;
+                    double distSq = dx * dx + dy * dy + dz * dz;
+                    if (distSq < bestDistSq) {
+                        bestDistSq = distSq;
+                        best = players[i];
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 半径内是否有玩家，找到第一个即返回
+     */
+    public boolean anyWithin(double x, double y, double z, double radius) {
+        if (players.length == 0) return false;
+        double radiusSq = radius * radius;
+        int minCellX = ((int) Math.floor(x - radius)) >> CELL_SHIFT;
+        int maxCellX = ((int) Math.floor(x + radius)) >> CELL_SHIFT;
+        int minCellZ = ((int) Math.floor(z - radius)) >> CELL_SHIFT;
+        int maxCellZ = ((int) Math.floor(z + radius)) >> CELL_SHIFT;
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                int slot = findSlot(cellKey(cellX, cellZ));
+                if (slot < 0) continue;
+                int end = bucketStarts[slot] + bucketCounts[slot];
+                for (int i = bucketStarts[slot]; i < end; i++) {
+                    double dx = xs[i] - x, dy = ys[i] - y, dz = zs[i] - z;
+                    if (dx * dx + dy * dy + dz * dz <= radiusSq) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public int getPlayerCount() {
+        return players.length;
+    }
+
+    private int slotFor(long key) {
+        int slot = mix(key) & bucketMask;
+        while (bucketCounts[slot] != 0 && bucketKeys[slot] != key) {
+            slot = (slot + 1) & bucketMask;
+        }
+        return slot;
+    }
+
+    private int findSlot(long key) {
+        int slot = mix(key) & bucketMask;
+        while (bucketCounts[slot] != 0) {
+            if (bucketKeys[slot] == key) return slot;
+            slot = (slot + 1) & bucketMask;
+        }
+        return -1;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX & 0xFFFFFFFFL) | (((long) cellZ & 0xFFFFFFFFL) << 32);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
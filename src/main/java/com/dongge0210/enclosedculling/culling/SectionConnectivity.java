@@ -0,0 +1,111 @@
+package com.dongge0210.enclosedculling.culling;
+
+/**
+ * 区段六面连通性 - 计算 16³ 区段内哪些面之间可以经由可通过体素相互到达
+ * 结果为 36 位掩码，第 (from * 6 + to) 位表示从 from 面进入后可以从 to 面离开
+ *
+ * 面编号与 Direction 的顺序一致：0 下、1 上、2 北(-z)、3 南(+z)、4 西(-x)、5 东(+x)，
+ * 相对的面编号只差最低位（face ^ 1）
+ */
+public final class SectionConnectivity {
+
+    public static final int FACE_COUNT = 6;
+    public static final long NONE = 0L;
+    public static final long ALL = (1L << (FACE_COUNT * FACE_COUNT)) - 1;
+
+    private SectionConnectivity() {
+    }
+
+    public static boolean connects(long mask, int fromFace, int toFace) {
+        return (mask & (1L << (fromFace * FACE_COUNT + toFace))) != 0;
+    }
+
+    public static int opposite(int face) {
+        return face ^ 1;
+    }
+
+    /**
+     * 根据一层 4096 位的可通过位图计算连通掩码
+     * 只从边界体素开始泛洪，不接触边界的封闭空腔不影响结果
+     *
+     * @param bits       区段位图
+     * @param wordOffset 该层在位图中的起始字
+     */
+    static long compute(long[] bits, int wordOffset) {
+        boolean anyPassable = false;
+        boolean allPassable = true;
+        for (int i = 0; i < 64; i++) {
+            long word = bits[wordOffset + i];
+            anyPassable |= word != 0L;
+            allPassable &= word == -1L;
+        }
+        if (!anyPassable) return NONE;
+        if (allPassable) return ALL;
+
+        long[] visited = new long[64];
+        short[] queue = new short[4096];
+        long result = NONE;
+
+        for (int start = 0; start < 4096; start++) {
+            if (faceMask(start) == 0 || !isSet(bits, wordOffset, start) || isSet(visited, 0, start)) continue;
+
+            // 泛洪一个连通分量，收集它接触到的面
+            int faces = 0;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = (short) start;
+            visited[start >>> 6] |= 1L << (start & 63);
+            while (head < tail) {
+                int index = queue[head++];
+                faces |= faceMask(index);
+                int x = index & 15;
+                int z = (index >> 4) & 15;
+                int y = index >> 8;
+                if (x > 0) tail = visit(bits, wordOffset, visited, queue, tail, index - 1);
+                if (x < 15) tail = visit(bits, wordOffset, visited, queue, tail, index + 1);
+                if (z > 0) tail = visit(bits, wordOffset, visited, queue, tail, index - 16);
+                if (z < 15) tail = visit(bits, wordOffset, visited, queue, tail, index + 16);
+                if (y > 0) tail = visit(bits, wordOffset, visited, queue, tail, index - 256);
+                if (y < 15) tail = visit(bits, wordOffset, visited, queue, tail, index + 256);
+            }
+
+            for (int from = 0; from < FACE_COUNT; from++) {
+                if ((faces & (1 << from)) == 0) continue;
+                for (int to = 0; to < FACE_COUNT; to++) {
+                    if ((faces & (1 << to)) != 0) {
+                        result |= 1L << (from * FACE_COUNT + to);
+                    }
+                }
+            }
+            if (result == ALL) break;
+        }
+        return result;
+    }
+
+    private static int visit(long[] bits, int wordOffset, long[] visited, short[] queue, int tail, int index) {
+        if (isSet(bits, wordOffset, index) && !isSet(visited, 0, index)) {
+            visited[index >>> 6] |= 1L << (index & 63);
+            queue[tail++] = (short) index;
+        }
+        return tail;
+    }
+
+    private static boolean isSet(long[] bits, int wordOffset, int index) {
+        return (bits[wordOffset + (index >>> 6)] & (1L << (index & 63))) != 0;
+    }
+
+    // 体素 (y<<8)|(z<<4)|x 所在的区段面
+    private static int faceMask(int index) {
+        int x = index & 15;
+        int z = (index >> 4) & 15;
+        int y = index >> 8;
+        int faces = 0;
+        if (y == 0) faces |= 1;
+        if (y == 15) faces |= 1 << 1;
+        if (z == 0) faces |= 1 << 2;
+        if (z == 15) faces |= 1 << 3;
+        if (x == 0) faces |= 1 << 4;
+        if (x == 15) faces |= 1 << 5;
+        return faces;
+    }
+}
@@ -0,0 +1,78 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import net.minecraft.core.SectionPos;
+
+import java.util.Arrays;
+
+/**
+ * 分析结果所依赖的区段 - 记录读取过的区段坐标及当时的位图
+ * 位图创建后不再修改，只要 PassabilityCache 中仍是同一个数组，区段内就没有方块变化
+ *
+ * 非线程安全；后台分析写入、渲染线程检查时由 SpaceAnalysisWorker 的双缓冲保证不会同时访问同一实例
+ */
+public class SectionDependencies {
+    private final PassabilityCache cache;
+    private final LongHashSet recorded = new LongHashSet(64);
+    private long[] keys = new long[64];
+    private long[][] bits = new long[64][];
+    private int count;
+
+    public SectionDependencies(PassabilityCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * 记录一个区段，已记录过的区段保留第一次读取时的位图
+     */
+    public void record(long sectionKey, long[] sectionBits) {
+        if (!recorded.add(sectionKey)) return;
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count << 1);
+            bits = Arrays.copyOf(bits, count << 1);
+        }
+        keys[count] = sectionKey;
+        bits[count] = sectionBits;
+        count++;
+    }
+
+    /**
+     * 记录过的区段是否都没有变化
+     */
+    public boolean isUnchanged() {
+        for (int i = 0; i < count; i++) {
+            long key = keys[i];
+            if (cache.peekSectionBits(SectionPos.x(key), SectionPos.y(key), SectionPos.z(key)) != bits[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 复制另一份依赖记录（增量分析在已发布结果的基础上继续扩展时使用）
+     */
+    public void copyFrom(SectionDependencies other) {
+        recorded.copyFrom(other.recorded);
+        if (keys.length < other.count) {
+            keys = new long[other.keys.length];
+            bits = new long[other.keys.length][];
+        }
+        System.arraycopy(other.keys, 0, keys, 0, other.count);
+        System.arraycopy(other.bits, 0, bits, 0, other.count);
+        if (count > other.count) {
+            Arrays.fill(bits, other.count, count, null);
+        }
+        count = other.count;
+    }
+
+    public void clear() {
+        recorded.clear();
+        Arrays.fill(bits, 0, count, null);
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+}
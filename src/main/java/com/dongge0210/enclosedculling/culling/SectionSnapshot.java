@@ -0,0 +1,124 @@
+package com.dongge0210.enclosedculling.culling;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+
+/**
+ * 区段快照 - 在渲染线程上截取玩家周围一个立方体范围内的区段位图，交给后台线程泛洪
+ * 位图数组本身不可变，快照只保存引用；截取时未缓存的区段在渲染线程上按 WorkBudget 构建
+ * （后台线程不能访问区块数据），预算用完后剩下的区段留到下一次截取
+ *
+ * 快照范围外和尚未构建的区段按未知处理，视为完全可通过：泛洪在那里只会多算可见空间，不会把可见的方块剔除。
+ * 有区段尚未构建的快照记为不完整，基于它的分析结果不算最新，下一帧会重新截取并泛洪
+ */
+public final class SectionSnapshot {
+    private final PassabilityCache.Layer layer;
+    private final int minSectionX;
+    private final int minSectionY;
+    private final int minSectionZ;
+    private final int size;
+    private final long[][] sections;
+    private final boolean complete;
+
+    private SectionSnapshot(PassabilityCache.Layer layer, int minSectionX, int minSectionY, int minSectionZ,
+                            int size, long[][] sections, boolean complete) {
+        this.layer = layer;
+        this.minSectionX = minSectionX;
+        this.minSectionY = minSectionY;
+        this.minSectionZ = minSectionZ;
+        this.size = size;
+        this.sections = sections;
+        this.complete = complete;
+    }
+
+    /**
+     * 截取以 center 所在区段为中心、半径为 radius 个区段的快照，只能在渲染线程上调用
+     * @param budget 构建未缓存区段的预算，每个区段消耗一次检查
+     */
+    public static SectionSnapshot capture(PassabilityCache cache, PassabilityCache.Layer layer, BlockPos center,
+                                          int radius, WorkBudget budget) {
+        int size = radius * 2 + 1;
+        int minX = SectionPos.blockToSectionCoord(center.getX()) - radius;
+        int minY = SectionPos.blockToSectionCoord(center.getY()) - radius;
+        int minZ = SectionPos.blockToSectionCoord(center.getZ()) - radius;
+
+        long[][] sections = new long[size * size * size][];
+        boolean complete = true;
+        int index = 0;
+        for (int dy = 0; dy < size; dy++) {
+            for (int dz = 0; dz < size; dz++) {
+                for (int dx = 0; dx < size; dx++) {
+                    // 已缓存、世界高度外或区块未加载的区段不需要构建
+                    long[] bits = cache.peekSectionBits(minX + dx, minY + dy, minZ + dz);
+                    if (bits == null && budget.tryCheck()) {
+                        bits = cache.getSectionBits(minX + dx, minY + dy, minZ + dz);
+                    }
+                    if (bits == null) complete = false;
+                    sections[index++] = bits;
+                }
+            }
+        }
+        return new SectionSnapshot(layer, minX, minY, minZ, size, sections, complete);
+    }
+
+    /**
+     * 创建读取快照的查询器，读取过的区段记录到 dependencies；查询器本身非线程安全
+     */
+    public PassabilityReader reader(SectionDependencies dependencies) {
+        return new Reader(dependencies);
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    /**
+     * 范围内的区段是否都已构建
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private long[] sectionAt(int sectionX, int sectionY, int sectionZ) {
+        int x = sectionX - minSectionX;
+        int y = sectionY - minSectionY;
+        int z = sectionZ - minSectionZ;
+        if (x < 0 || y < 0 || z < 0 || x >= size || y >= size || z >= size) {
+            return null;
+        }
+        return sections[(y * size + z) * size + x];
+    }
+
+    private final class Reader implements PassabilityReader {
+        private final SectionDependencies dependencies;
+        private long lastKey;
+        private long[] lastBits;
+
+        private Reader(SectionDependencies dependencies) {
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public boolean isPassable(long packedPos) {
+            int x = BlockPos.getX(packedPos);
+            int y = BlockPos.getY(packedPos);
+            int z = BlockPos.getZ(packedPos);
+            int sectionX = SectionPos.blockToSectionCoord(x);
+            int sectionY = SectionPos.blockToSectionCoord(y);
+            int sectionZ = SectionPos.blockToSectionCoord(z);
+            long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+            if (lastBits == null || key != lastKey) {
+                long[] bits = sectionAt(sectionX, sectionY, sectionZ);
+                if (bits == null) {
+                    // 范围外或尚未构建：未知，按可见处理
+                    bits = PassabilityCache.ALL_PASSABLE;
+                } else {
+                    dependencies.record(key, bits);
+                }
+                lastBits = bits;
+                lastKey = key;
+            }
+            return PassabilityCache.testBit(lastBits, x, y, z, layer);
+        }
+    }
+}
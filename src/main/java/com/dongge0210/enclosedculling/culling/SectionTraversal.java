@@ -0,0 +1,116 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import com.dongge0210.enclosedculling.util.LongIntHashMap;
+import net.minecraft.core.SectionPos;
+
+import java.util.Arrays;
+
+/**
+ * 区段广度优先遍历 - SectionVisibilityGraph 在后台线程上执行的部分，不直接访问世界和缓存
+ *
+ * 与原版 LevelRenderer 的区段遍历一样，每个区段记录它的全部进入面：区段出队前被其他区段再次到达时，
+ * 只把新的进入面并入，不重复入队；离开面只要与任意一个进入面连通即可继续传播。
+ * 不回头的方向集合沿用第一次到达时的路径。非线程安全，复用同一个实例不会产生分配
+ */
+final class SectionTraversal {
+
+    /**
+     * 区段连通性来源
+     */
+    interface Sections {
+        /**
+         * @return 区段的六面连通掩码（SectionConnectivity），未知的区段应返回 SectionConnectivity.ALL
+         */
+        long connectivity(long sectionKey, int sectionX, int sectionY, int sectionZ);
+    }
+
+    private static final int[] FACE_DX = {0, 0, 0, 0, -1, 1};
+    private static final int[] FACE_DY = {-1, 1, 0, 0, 0, 0};
+    private static final int[] FACE_DZ = {0, 0, -1, 1, 0, 0};
+    private static final int FACE_BITS = (1 << SectionConnectivity.FACE_COUNT) - 1;
+    // 节点状态：低 6 位为进入面，其上 6 位为已经走过的方向；起点区段没有进入面
+    private static final int TRAVELLED_SHIFT = SectionConnectivity.FACE_COUNT;
+
+    // 节点按入队顺序编号，编号即队列位置：编号小于游标的节点已经出队
+    private final LongIntHashMap nodes = new LongIntHashMap(4096);
+    private long[] keys = new long[1024];
+    private int[] states = new int[1024];
+    private int count;
+
+    /**
+     * 从 cameraSection 出发遍历，被到达的区段写入 reachable（先清空）
+     *
+     * @param radius 水平方向离起点的最大区段数
+     * @param minY   最低区段（含）
+     * @param maxY   最高区段（不含）
+     */
+    void run(long cameraSection, int radius, int minY, int maxY, Sections sections, LongHashSet reachable) {
+        reachable.clear();
+        nodes.clear();
+        count = 0;
+
+        int cameraX = SectionPos.x(cameraSection);
+        int cameraZ = SectionPos.z(cameraSection);
+
+        reachable.add(cameraSection);
+        nodes.putIfAbsent(cameraSection, 0, -1);
+        append(cameraSection, 0);
+
+        for (int cursor = 0; cursor < count; cursor++) {
+            long key = keys[cursor];
+            int entryFaces = states[cursor] & FACE_BITS;
+            int travelled = states[cursor] >>> TRAVELLED_SHIFT;
+
+            int sectionX = SectionPos.x(key);
+            int sectionY = SectionPos.y(key);
+            int sectionZ = SectionPos.z(key);
+            long connectivity = sections.connectivity(key, sectionX, sectionY, sectionZ);
+            int exits = entryFaces == 0 ? FACE_BITS : exitFaces(connectivity, entryFaces);
+
+            for (int face = 0; face < SectionConnectivity.FACE_COUNT; face++) {
+                if ((exits & (1 << face)) == 0) continue;
+                // 不回头：已经朝某个方向走过，就不再朝它的反方向走
+                if ((travelled & (1 << SectionConnectivity.opposite(face))) != 0) continue;
+
+                int nextX = sectionX + FACE_DX[face];
+                int nextY = sectionY + FACE_DY[face];
+                int nextZ = sectionZ + FACE_DZ[face];
+                if (nextY < minY || nextY >= maxY
+                    || Math.abs(nextX - cameraX) > radius || Math.abs(nextZ - cameraZ) > radius) continue;
+
+                long next = SectionPos.asLong(nextX, nextY, nextZ);
+                int entry = 1 << SectionConnectivity.opposite(face);
+                int existing = nodes.putIfAbsent(next, count, -1);
+                if (existing < 0) {
+                    reachable.add(next);
+                    append(next, entry | ((travelled | (1 << face)) << TRAVELLED_SHIFT));
+                } else if (existing > cursor) {
+                    // 尚未出队：并入新的进入面
+                    states[existing] |= entry;
+                }
+            }
+        }
+    }
+
+    // 任一进入面能够到达的离开面
+    private static int exitFaces(long connectivity, int entryFaces) {
+        int exits = 0;
+        for (int face = 0; face < SectionConnectivity.FACE_COUNT; face++) {
+            if ((entryFaces & (1 << face)) != 0) {
+                exits |= (int) (connectivity >>> (face * SectionConnectivity.FACE_COUNT)) & FACE_BITS;
+            }
+        }
+        return exits;
+    }
+
+    private void append(long key, int state) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count << 1);
+            states = Arrays.copyOf(states, count << 1);
+        }
+        keys[count] = key;
+        states[count] = state;
+        count++;
+    }
+}
@@ -0,0 +1,213 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+
+/**
+ * 区段可见性图 - 以 16³ 区段为节点、区段面为入口的广度优先遍历
+ * 从摄像机所在区段出发，只有当离开面与任意一个进入面在区段内连通（SectionConnectivity）时才继续传播，
+ * 并且不允许沿已经走过的方向的反方向前进；被到达的区段即为可能可见的渲染区段（遍历见 SectionTraversal）
+ *
+ * 遍历只读取 PassabilityCache 中已缓存的位图，在后台线程执行，结果与 SpaceAnalysisWorker 一样双缓冲发布。
+ * 遍历中遇到的未缓存区段按完全连通处理（不会误剔除），并由渲染线程在每帧的 WorkBudget 内构建，构建后重新遍历；
+ * 区块尚未加载的列无法构建，渲染线程记下这些列，之后的遍历不再把它们列为缺失，区块加载后再移出
+ */
+public class SectionVisibilityGraph {
+
+    public final Level world;
+    private final PassabilityCache cache;
+
+    private volatile Result published;
+    private Result back;
+    private volatile boolean busy;
+    private volatile int generation;
+
+    // 以下字段只在渲染线程访问
+    private long submittedCameraSection;
+    private int submittedRadius = -1;
+    private int submittedModificationCount;
+    private int observedGeneration;
+    private int missingCursor;
+    private final WorkBudget buildBudget = new WorkBudget();
+    // 区块尚未加载的列（ChunkPos.asLong），提交遍历时复制到结果中供后台线程读取
+    private final LongHashSet unloadedColumns = new LongHashSet(64);
+    private long[] unloadedList = new long[64];
+    private int unloadedCount;
+
+    // 以下字段只在后台线程访问
+    private final SectionTraversal traversal = new SectionTraversal();
+
+    /**
+     * 一次遍历的结果，发布后不再修改
+     */
+    private static final class Result {
+        final LongHashSet reachable = new LongHashSet(4096);
+        final LongHashSet unloadedColumns = new LongHashSet(64);
+        long[] missing = new long[256];
+        int missingCount;
+        long cameraSection;
+
+        void addMissing(long sectionKey) {
+            if (missingCount == missing.length) {
+                missing = Arrays.copyOf(missing, missingCount << 1);
+            }
+            missing[missingCount++] = sectionKey;
+        }
+    }
+
+    public SectionVisibilityGraph(Level world) {
+        this.world = world;
+        this.cache = PassabilityCache.forLevel(world);
+        this.back = new Result();
+    }
+
+    /**
+     * 每帧在渲染线程调用：构建上次遍历缺失的区段，必要时提交新的遍历，从不等待后台线程
+     *
+     * @param camera          摄像机所在方块
+     * @param renderDistance  渲染距离（区块）
+     */
+    public void update(BlockPos camera, int renderDistance) {
+        if (busy) return;
+
+        Result current = published;
+        if (generation != observedGeneration) {
+            observedGeneration = generation;
+            missingCursor = 0;
+        }
+        if (current != null) {
+            buildMissing(current);
+        }
+
+        int sectionY = Math.max(world.getMinSection(),
+            Math.min(world.getMaxSection() - 1, SectionPos.blockToSectionCoord(camera.getY())));
+        long cameraSection = SectionPos.asLong(SectionPos.blockToSectionCoord(camera.getX()), sectionY,
+            SectionPos.blockToSectionCoord(camera.getZ()));
+        int radius = renderDistance + 1;
+        int modificationCount = cache.getModificationCount();
+
+        if (current != null && cameraSection == submittedCameraSection && radius == submittedRadius
+            && modificationCount == submittedModificationCount) {
+            return;
+        }
+
+        if (modificationCount != submittedModificationCount) {
+            // 区块加载会使整列失效并改变计数，此时移出已经加载的列
+            pruneLoadedColumns();
+        }
+        submittedCameraSection = cameraSection;
+        submittedRadius = radius;
+        submittedModificationCount = modificationCount;
+        // 后台线程空闲时 back 只由渲染线程访问
+        Result target = back;
+        target.unloadedColumns.copyFrom(unloadedColumns);
+        busy = true;
+        SpaceAnalysisWorker.EXECUTOR.execute(() -> {
+            try {
+                traverse(target, cameraSection, radius);
+                back = published != null ? published : new Result();
+                published = target;
+                generation++;
+            } catch (Exception e) {
+                EnclosedSpaceRenderCulling.LOGGER.warn("Section visibility traversal failed: {}", e.getMessage());
+            } finally {
+                busy = false;
+            }
+        });
+    }
+
+    // 每构建一个区段消耗一次检查，预算由 WorkBudget 按配置限制；区块未加载的区段只记下所在列，不消耗预算
+    private void buildMissing(Result current) {
+        if (missingCursor >= current.missingCount) return;
+        buildBudget.resetFromConfig();
+        while (missingCursor < current.missingCount) {
+            long key = current.missing[missingCursor];
+            int sectionX = SectionPos.x(key), sectionZ = SectionPos.z(key);
+            long column = ChunkPos.asLong(sectionX, sectionZ);
+            if (unloadedColumns.contains(column)) {
+                missingCursor++;
+                continue;
+            }
+            if (world.getChunkSource().getChunkNow(sectionX, sectionZ) == null) {
+                addUnloadedColumn(column);
+                missingCursor++;
+                continue;
+            }
+            if (!buildBudget.tryCheck()) return;
+            missingCursor++;
+            cache.getSectionBits(sectionX, SectionPos.y(key), sectionZ);
+        }
+    }
+
+    private void addUnloadedColumn(long column) {
+        if (!unloadedColumns.add(column)) return;
+        if (unloadedCount == unloadedList.length) {
+            unloadedList = Arrays.copyOf(unloadedList, unloadedCount << 1);
+        }
+        unloadedList[unloadedCount++] = column;
+    }
+
+    private void pruneLoadedColumns() {
+        if (unloadedCount == 0) return;
+        int kept = 0;
+        for (int i = 0; i < unloadedCount; i++) {
+            long column = unloadedList[i];
+            if (world.getChunkSource().getChunkNow(ChunkPos.getX(column), ChunkPos.getZ(column)) == null) {
+                unloadedList[kept++] = column;
+            }
+        }
+        if (kept == unloadedCount) return;
+        unloadedCount = kept;
+        unloadedColumns.clear();
+        for (int i = 0; i < kept; i++) {
+            unloadedColumns.add(unloadedList[i]);
+        }
+    }
+
+    private void traverse(Result target, long cameraSection, int radius) {
+        target.missingCount = 0;
+        target.cameraSection = cameraSection;
+        // 遍历只读取已缓存的位图；未缓存的区段按完全连通处理并记为缺失，区块未加载的列除外
+        traversal.run(cameraSection, radius, world.getMinSection(), world.getMaxSection(),
+            (key, sectionX, sectionY, sectionZ) -> {
+                long[] bits = cache.getCachedSectionBits(sectionX, sectionY, sectionZ);
+                if (bits != null) return PassabilityCache.connectivity(bits);
+                if (!target.unloadedColumns.contains(ChunkPos.asLong(sectionX, sectionZ))) {
+                    target.addMissing(key);
+                }
+                return SectionConnectivity.ALL;
+            }, target.reachable);
+    }
+
+    /**
+     * 是否已经发布过遍历结果
+     */
+    public boolean hasResult() {
+        return published != null;
+    }
+
+    /**
+     * 方块坐标所在区段是否可以从摄像机到达；尚无结果时返回 true（不剔除）
+     * 只应在渲染线程上调用
+     */
+    public boolean isReachable(BlockPos pos) {
+        Result current = published;
+        return current == null || current.reachable.contains(SectionPos.asLong(pos));
+    }
+
+    public int getReachableSectionCount() {
+        Result current = published;
+        return current != null ? current.reachable.size() : 0;
+    }
+
+    public int getMissingSectionCount() {
+        Result current = published;
+        return current != null ? current.missingCount - Math.min(missingCursor, current.missingCount) : 0;
+    }
+}
@@ -0,0 +1,159 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 空间分析后台线程 - 泛洪填充在单独的线程上读取 SectionSnapshot 执行，渲染线程只提交任务和读取结果
+ * 每帧最多执行一片受 WorkBudget 限制的工作，未完成的泛洪保留前沿，下一帧继续
+ *
+ * 双缓冲：published 是已发布的分析器（volatile），back 只由后台线程写入，完成后两者交换。
+ * 渲染线程只在上一个任务完成后才提交新任务，提交发生在渲染线程自身，此时它不会正在读取旧结果，
+ * 因此后台线程可以安全地复用 back，渲染线程读取 published 时无需加锁，也永远不会等待分析完成
+ */
+public class SpaceAnalysisWorker {
+
+    // 所有世界与区段可见性图共用一个后台线程，任务按提交顺序执行
+    static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EnclosedCulling-SpaceAnalysis");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    public final Level world;
+    private volatile SpaceConnectivityAnalyzer published;
+    private SpaceConnectivityAnalyzer back;
+    private volatile boolean busy;
+    // back 中有尚未完成的泛洪
+    private volatile boolean inProgress;
+    private volatile int generation;
+    private volatile long lastSliceNanos;
+    private volatile long lastAnalysisNanos;
+    private long analysisNanos;
+    private final WorkBudget budget = new WorkBudget();
+
+    public SpaceAnalysisWorker(Level world, int maxSteps) {
+        this.world = world;
+        this.published = new SpaceConnectivityAnalyzer(world, maxSteps);
+        this.back = new SpaceConnectivityAnalyzer(world, maxSteps);
+    }
+
+    /**
+     * 开始一次新的分析并执行第一片，上一片尚未完成或仍有未完成的分析时直接返回 false（不排队、不等待）
+     * 只能在渲染线程上调用
+     *
+     * @param incremental true 时在已发布结果的基础上从 start 继续扩展，否则完整泛洪
+     * @param maxChecks   本片的检查数预算（WorkBudget）
+     * @param timeLimitMillis 本片的时间预算
+     */
+    public boolean submit(BlockPos start, SectionSnapshot snapshot, boolean incremental, int maxChecks, double timeLimitMillis) {
+        if (busy || inProgress) return false;
+        busy = true;
+        inProgress = true;
+
+        BlockPos origin = start.immutable();
+        EXECUTOR.execute(() -> {
+            analysisNanos = 0L;
+            try {
+                SpaceConnectivityAnalyzer target = back;
+                if (incremental) {
+                    target.copyFrom(published);
+                    target.beginExtend(origin, snapshot);
+                } else {
+                    target.beginFlood(origin, snapshot);
+                }
+            } catch (Exception e) {
+                EnclosedSpaceRenderCulling.LOGGER.warn("Background space analysis failed to start: {}", e.getMessage());
+                inProgress = false;
+                busy = false;
+                return;
+            }
+            runSlice(maxChecks, timeLimitMillis);
+        });
+        return true;
+    }
+
+    /**
+     * 继续执行未完成的分析（每帧最多一片），没有未完成的分析或上一片尚未结束时返回 false
+     * 只能在渲染线程上调用
+     */
+    public boolean resume(int maxChecks, double timeLimitMillis) {
+        if (busy || !inProgress) return false;
+        busy = true;
+        EXECUTOR.execute(() -> runSlice(maxChecks, timeLimitMillis));
+        return true;
+    }
+
+    // 在后台线程执行一片，完成时交换双缓冲；未完成时已发布的结果继续有效
+    private void runSlice(int maxChecks, double timeLimitMillis) {
+        long startTime = System.nanoTime();
+        try {
+            SpaceConnectivityAnalyzer target = back;
+            if (target.resume(budget.reset(maxChecks, timeLimitMillis))) {
+                back = published;
+                published = target;
+                inProgress = false;
+                generation++;
+            }
+        } catch (Exception e) {
+            // back 可能写了一半，但不会被发布；下次提交会重新完整写入
+            inProgress = false;
+            EnclosedSpaceRenderCulling.LOGGER.warn("Background space analysis failed: {}", e.getMessage());
+        } finally {
+            lastSliceNanos = System.nanoTime() - startTime;
+            analysisNanos += lastSliceNanos;
+            if (!inProgress) {
+                lastAnalysisNanos = analysisNanos;
+            }
+            busy = false;
+        }
+    }
+
+    /**
+     * 最近一次发布的分析器，尚未完成过分析时也会返回（此时可见集合为空、起点为 null）
+     */
+    public SpaceConnectivityAnalyzer getPublished() {
+        return published;
+    }
+
+    /**
+     * 是否已经发布过至少一次结果
+     */
+    public boolean hasResult() {
+        return generation > 0;
+    }
+
+    public boolean isBusy() {
+        return busy;
+    }
+
+    /**
+     * 是否有已经开始但尚未发布的分析
+     */
+    public boolean isInProgress() {
+        return inProgress;
+    }
+
+    /**
+     * 每发布一次结果加一，渲染线程据此判断是否有新结果
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 最近一次完成的分析在后台线程上的总耗时（所有分片之和）
+     */
+    public double getLastAnalysisMillis() {
+        return lastAnalysisNanos / 1_000_000.0;
+    }
+
+    public double getLastSliceMillis() {
+        return lastSliceNanos / 1_000_000.0;
+    }
+}
@@ -1,51 +1,168 @@
 package com.dongge0210.enclosedculling.culling;
 
 import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import com.dongge0210.enclosedculling.util.LongQueue;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.Level;
-import java.util.*;
+import net.minecraft.world.level.block.state.BlockState;
 
+/**
+ * 空间连通性分析器 - 从玩家位置泛洪填充可见空间
+ * 坐标以 BlockPos.asLong 打包为 long，集合与队列均为可复用的原始类型结构，
+ * 复用同一个分析器进行泛洪时不会产生任何分配；可通过性从 PassabilityCache 的区段位图读取
+ *
+ * 不带快照的方法在调用线程上直接读取缓存并一次完成；begin* 只读快照，由 resume 按 WorkBudget 分片执行，
+ * 可在后台线程跨多帧完成
+ */
 public class SpaceConnectivityAnalyzer {
     public final Level world;
-    private final Set<BlockPos> visibleSpaces = new HashSet<>();
+    private final LongHashSet visibleSpaces;
+    private final LongQueue queue;
+    private final SectionDependencies dependencies;
+    private final PassabilityCache.View liveView;
+    private PassabilityReader passability;
     private final int maxStep;
+    private BlockPos origin;
+    // 结果是否只读取过完整的快照（或直接读取缓存），读取过未构建区段的结果需要重新分析
+    private boolean sourceComplete = true;
+
+    // 可恢复泛洪的进度
+    private int steps;
+    private int sizeAtStart;
+    private boolean complete = true;
+
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
 
     public SpaceConnectivityAnalyzer(Level world, int maxStep) {
         this.world = world;
         this.maxStep = maxStep;
+        // 每步最多新增5个邻居，按步数预留容量，首次扩容后即稳定
+        this.visibleSpaces = new LongHashSet(maxStep * 2);
+        this.queue = new LongQueue(maxStep);
+        PassabilityCache cache = PassabilityCache.forLevel(world);
+        this.dependencies = new SectionDependencies(cache);
+        this.liveView = cache.trackingView(PassabilityCache.Layer.SPACE, dependencies);
+        this.passability = liveView;
     }
 
     // 泛洪填充,标记所有可见空间
     public void floodFrom(BlockPos start) {
+        liveView.reset();
+        beginFlood(start, liveView);
+        sourceComplete = true;
+        resume(WorkBudget.unlimited());
+    }
+
+    /**
+     * 开始一次只读取快照的完整泛洪，之后通过 resume 分片执行，供后台线程使用
+     */
+    public void beginFlood(BlockPos start, SectionSnapshot snapshot) {
+        beginFlood(start, snapshot.reader(dependencies));
+        sourceComplete = snapshot.isComplete();
+    }
+
+    private void beginFlood(BlockPos start, PassabilityReader reader) {
         visibleSpaces.clear();
-        Queue<BlockPos> queue = new ArrayDeque<>();
-        queue.add(start);
-        visibleSpaces.add(start);
+        dependencies.clear();
+        origin = start.immutable();
+        beginFrontier(start.asLong(), reader);
+    }
 
-        int[] dx = {1, -1, 0, 0, 0, 0};
-        int[] dy = {0, 0, 1, -1, 0, 0};
-        int[] dz = {0, 0, 0, 0, 1, -1};
+    /**
+     * 增量泛洪：保留已有可见集合，从新的位置继续扩展
+     * 仅在 isResultCurrent() 为 true 时使用，否则已有结果可能包含过期空间
+     */
+    public void extendFrom(BlockPos start) {
+        liveView.reset();
+        beginFrontier(start.asLong(), liveView);
+        resume(WorkBudget.unlimited());
+    }
+
+    /**
+     * 开始一次只读取快照的增量泛洪，之后通过 resume 分片执行，供后台线程使用
+     */
+    public void beginExtend(BlockPos start, SectionSnapshot snapshot) {
+        beginFrontier(start.asLong(), snapshot.reader(dependencies));
+        sourceComplete &= snapshot.isComplete();
+    }
 
-        int steps = 0;
-        while (!queue.isEmpty() && steps++ < maxStep) {
-            BlockPos pos = queue.poll();
+    /**
+     * 复制另一个分析器的结果（可见集合、起点和依赖区段），用于在已发布结果上增量扩展
+     */
+    public void copyFrom(SpaceConnectivityAnalyzer other) {
+        visibleSpaces.copyFrom(other.visibleSpaces);
+        dependencies.copyFrom(other.dependencies);
+        origin = other.origin;
+        sourceComplete = other.sourceComplete;
+    }
+
+    private void beginFrontier(long startKey, PassabilityReader reader) {
+        passability = reader;
+        queue.clear();
+        queue.enqueue(startKey);
+        visibleSpaces.add(startKey);
+        steps = 0;
+        sizeAtStart = visibleSpaces.size();
+        complete = false;
+    }
+
+    /**
+     * 在预算内继续泛洪，前沿保存在队列中，预算用完时返回
+     * @return true 表示本次泛洪已经完成
+     */
+    public boolean resume(WorkBudget budget) {
+        if (complete) return true;
+
+        while (!queue.isEmpty() && steps < maxStep) {
+            if (!budget.tryStep()) {
+                return false;
+            }
+            steps++;
+            long pos = queue.dequeue();
             for (int d = 0; d < 6; d++) {
-                BlockPos next = pos.offset(dx[d], dy[d], dz[d]);
-                if (!visibleSpaces.contains(next) && isAirOrTransparent(next)) {
+                long next = BlockPos.offset(pos, DX[d], DY[d], DZ[d]);
+                if (!visibleSpaces.contains(next) && passability.isPassable(next)) {
                     visibleSpaces.add(next);
-                    queue.add(next);
+                    queue.enqueue(next);
                 }
             }
         }
-        
+
+        complete = true;
         // 记录分析结果
-        EnclosedSpaceRenderCulling.LOGGER.debug("Space connectivity analysis completed: {} visible positions analyzed in {} steps", 
-            visibleSpaces.size(), steps);
+        EnclosedSpaceRenderCulling.LOGGER.debug("Space connectivity analysis completed: {} new positions in {} steps (total {})",
+            visibleSpaces.size() - sizeAtStart, steps, visibleSpaces.size());
+        return true;
     }
 
-    private boolean isAirOrTransparent(BlockPos pos) {
-        var state = world.getBlockState(pos);
-        
+    /**
+     * 最近一次开始的泛洪是否已经完成
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 当前结果读取过的区段是否都没有发生方块变化，且读取的快照中没有尚未构建的区段
+     */
+    public boolean isResultCurrent() {
+        return origin != null && sourceComplete && dependencies.isUnchanged();
+    }
+
+    /**
+     * 最近一次完整泛洪的起点
+     */
+    public BlockPos getOrigin() {
+        return origin;
+    }
+
+    /**
+     * 空间泛洪的可通过判定，由 PassabilityCache 在构建区段位图时调用
+     */
+    static boolean isAirOrTransparent(BlockState state) {
         // 空气方块
         if (state.isAir()) {
             return true;
@@ -82,7 +199,7 @@ public class SpaceConnectivityAnalyzer {
     }
 
     public boolean isVisible(BlockPos pos) {
-        return visibleSpaces.contains(pos);
+        return visibleSpaces.contains(pos.asLong());
     }
     
     // 调试方法
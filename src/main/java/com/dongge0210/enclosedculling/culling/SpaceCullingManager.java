@@ -12,12 +12,24 @@ import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
 public class SpaceCullingManager {
-    private SpaceConnectivityAnalyzer analyzer = null;
+    private SpaceAnalysisWorker worker = null;
     private BlockPos lastPlayerPos = null;
-    private Level lastWorld = null;
+    private int lastSeenGeneration = 0;
+    // 截取快照时构建未缓存区段的预算，只在渲染线程上使用
+    private final WorkBudget captureBudget = new WorkBudget();
+    // 区段级可见性图，由 LevelRendererMixin 直接读取
+    private static volatile SectionVisibilityGraph sectionGraph = null;
 
     // 剔除范围和泛洪步数（建议做成config）
     private static final int MAX_STEPS = 8000;
+    // 增量模式的边界：离完整泛洪起点超过该距离，或集合增长过大时重新完整泛洪
+    private static final int REFLOOD_DISTANCE = 32;
+    private static final int MAX_INCREMENTAL_SPACES = MAX_STEPS * 4;
+    // 交给后台线程的快照半径（区段）。泛洪最多 MAX_STEPS 步，可达距离远大于任何可行的快照，
+    // 因此不按可达距离取值：范围外的区段按未知处理，视为可通过（可见），只会少剔除、不会误剔除
+    private static final int SNAPSHOT_RADIUS = 3;
+
+    private String lastFloodMode = "完整泛洪";
 
     public static void register() {
         SpaceCullingManager instance = new SpaceCullingManager();
@@ -45,20 +57,77 @@ public class SpaceCullingManager {
 
         // 只有空间剔除启用时才更新分析器
         if (spaceCullingEnabled) {
-            if (analyzer == null || lastWorld != world || lastPlayerPos == null || !lastPlayerPos.equals(playerPos)) {
-                analyzer = new SpaceConnectivityAnalyzer(world, MAX_STEPS);
-                analyzer.floodFrom(playerPos);
-                lastPlayerPos = playerPos;
-                lastWorld = world;
-                
-                // 更新调试信息
+            if (worker == null || worker.world != world) {
+                // 同一世界内复用后台分析器，泛洪使用的集合与队列不再重复分配
+                worker = new SpaceAnalysisWorker(world, MAX_STEPS);
+                lastPlayerPos = null;
+                lastSeenGeneration = 0;
+            }
+            SectionVisibilityGraph graph = sectionGraph;
+            if (graph == null || graph.world != world) {
+                graph = new SectionVisibilityGraph(world);
+                sectionGraph = graph;
+            }
+            graph.update(BlockPos.containing(mc.gameRenderer.getMainCamera().getPosition()),
+                mc.options.getEffectiveRenderDistance());
+
+            // 后台线程发布了新结果
+            int generation = worker.getGeneration();
+            if (generation != lastSeenGeneration) {
+                lastSeenGeneration = generation;
                 updateDebugInfo(mc, world, playerPos, player);
             }
+
+            // 上一片尚未结束时本帧继续使用已发布的结果，不等待
+            if (worker.isBusy()) return;
+
+            // 未完成的分析每帧继续一片，完成前已发布的结果保持有效
+            if (worker.isInProgress()) {
+                worker.resume(WorkBudget.configuredChecks(), WorkBudget.configuredTimeLimitMillis());
+                return;
+            }
+
+            SpaceConnectivityAnalyzer current = worker.getPublished();
+            boolean moved = lastPlayerPos == null || !lastPlayerPos.equals(playerPos);
+            boolean resultCurrent = current.isResultCurrent();
+
+            if (moved || !resultCurrent) {
+                updateAnalysis(world, playerPos, current, resultCurrent);
+                lastPlayerPos = playerPos;
+            }
         } else {
             // 空间剔除关闭时，清除分析器
-            analyzer = null;
+            worker = null;
+            sectionGraph = null;
             lastPlayerPos = null;
-            lastWorld = null;
+            lastSeenGeneration = 0;
+        }
+    }
+    
+    /**
+     * 增量更新空间分析结果
+     * - 结果所依赖的区段没有变化且玩家仍在可见集合内：直接沿用
+     * - 玩家走出可见集合：从新位置继续扩展已有集合
+     * - 方块变化、偏离起点过远或集合过大：完整重新泛洪
+     * 需要分析时在渲染线程截取区段快照，泛洪本身交给后台线程
+     */
+    private void updateAnalysis(Level world, BlockPos playerPos, SpaceConnectivityAnalyzer current, boolean resultCurrent) {
+        BlockPos origin = current.getOrigin();
+        boolean needsFullFlood = !resultCurrent
+            || origin == null
+            || origin.distSqr(playerPos) > (double) REFLOOD_DISTANCE * REFLOOD_DISTANCE
+            || current.getVisibleSpaceCount() > MAX_INCREMENTAL_SPACES;
+
+        if (!needsFullFlood && current.isVisible(playerPos)) {
+            lastFloodMode = "沿用结果";
+            return;
+        }
+
+        SectionSnapshot snapshot = SectionSnapshot.capture(PassabilityCache.forLevel(world),
+            PassabilityCache.Layer.SPACE, playerPos, SNAPSHOT_RADIUS, captureBudget.resetFromConfig());
+        if (worker.submit(playerPos, snapshot, !needsFullFlood,
+                WorkBudget.configuredChecks(), WorkBudget.configuredTimeLimitMillis())) {
+            lastFloodMode = needsFullFlood ? "完整泛洪" : "增量扩展";
         }
     }
     
@@ -72,7 +141,7 @@ public class SpaceCullingManager {
             Integer playerGroupId = null;
             
             if (playerRoomId != null) {
-                playerGroupId = com.dongge0210.enclosedculling.room.RoomManager.getGroupIdForRoom(playerRoomId);
+                playerGroupId = com.dongge0210.enclosedculling.room.RoomManager.getGroupIdForRoom(world, playerRoomId);
             }
             
             // 记录详细的调试信息
@@ -99,9 +168,18 @@ public class SpaceCullingManager {
             
             // 简化的房间信息 - 删除实体渲染状态
             DebugManager.setDebugInfo("culling_analyzer_updated", "已更新");
+            SpaceConnectivityAnalyzer analyzer = worker.getPublished();
             DebugManager.setDebugInfo("visible_spaces_count", analyzer.getVisibleSpaceCount());
             DebugManager.setDebugInfo("culling_method", "仅空间连通性");
             DebugManager.setDebugInfo("max_flood_steps", MAX_STEPS);
+            DebugManager.setDebugInfo("flood_mode", lastFloodMode);
+            DebugManager.setDebugInfo("flood_thread_ms", String.format("%.2f", worker.getLastAnalysisMillis()));
+            DebugManager.setDebugInfo("flood_slice_ms", String.format("%.2f", worker.getLastSliceMillis()));
+            SectionVisibilityGraph graph = sectionGraph;
+            if (graph != null) {
+                DebugManager.setDebugInfo("reachable_sections", graph.getReachableSectionCount());
+                DebugManager.setDebugInfo("pending_sections", graph.getMissingSectionCount());
+            }
             
             // 获取房间统计信息
             String roomStats = com.dongge0210.enclosedculling.room.RoomManager.getRoomStats();
@@ -122,9 +200,17 @@ public class SpaceCullingManager {
     }
 
     /**
-     * 获取空间连通性分析器
+     * 获取当前世界的区段可见性图，空间剔除关闭或尚未初始化时返回 null
+     */
+    public static SectionVisibilityGraph getSectionGraph() {
+        return sectionGraph;
+    }
+
+    /**
+     * 获取最近一次发布的空间连通性分析结果，尚无结果时返回 null
+     * 返回的分析器可能在下一次提交分析后被后台线程复用，只应在渲染线程上读取
      */
     public SpaceConnectivityAnalyzer getAnalyzer() {
-        return analyzer;
+        return worker != null && worker.hasResult() ? worker.getPublished() : null;
     }
 }
@@ -0,0 +1,161 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.config.ModConfig;
+import com.dongge0210.enclosedculling.room.RoomManager;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.ExperienceOrb;
+import net.minecraft.world.entity.item.FallingBlockEntity;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.item.PrimedTnt;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.entity.projectile.Projectile;
+import net.minecraft.world.level.Level;
+
+/**
+ * 实体tick降频 - 可见实体每tick执行；玩家不可见房间中的实体按与最近玩家的距离分为近、远两档，
+ * 分别每 occludedNearInterval / occludedFarInterval tick 执行一次（配置见 ModConfig 的 tickLod 节）
+ *
+ * 执行的tick由实体ID的哈希错开，同一档的实体均匀分布在间隔内的各个tick上，不会集中在同一tick。
+ * 跳过发生在 ServerLevel.tickNonPassenger 调用 Entity.tick 处，整个tick都不执行；
+ * 实体再次执行时由 catchUp 补上跳过的tick对 baseTick 中倒计时的影响
+ * （tickCount 由世界在调用 Entity.tick 前递增，无需处理；幼年/繁殖冷却随 aiStep 推进，
+ * 跳过期间与实体离开模拟距离时一样暂停，不额外补偿）
+ *
+ * 行为由自身计时器或每tick的运动驱动的实体不降频，见 isTimerDriven：TNT 的引信、掉落物的存在时间和拾取延迟、
+ * 经验球的存在时间、弹射物和下落方块的飞行都在 Entity.tick 中推进，降频会让它们变慢，且 catchUp 无法补偿
+ */
+public final class TickLod {
+    private static final double DEFAULT_NEAR_DISTANCE = 32.0;
+    private static final int DEFAULT_NEAR_INTERVAL = 4;
+    private static final int DEFAULT_FAR_INTERVAL = 20;
+
+    private TickLod() {
+    }
+
+    public static boolean isEnabled() {
+        try {
+            return ModConfig.COMMON.enableTickLod.get();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 被遮挡实体的执行间隔
+     * @param distanceSq 与最近玩家距离的平方
+     */
+    public static int occludedInterval(double distanceSq) {
+        double near = configuredNearDistance();
+        return distanceSq <= near * near ? configuredNearInterval() : configuredFarInterval();
+    }
+
+    /**
+     * 按间隔降频时，实体是否在本tick执行
+     */
+    public static boolean isScheduled(long gameTime, int entityId, int interval) {
+        if (interval <= 1) return true;
+        return Math.floorMod(gameTime + mix(entityId), interval) == 0;
+    }
+
+    /**
+     * 在 ServerLevel.tickNonPassenger 调用 Entity.tick 之前决定本tick是否跳过；
+     * 不跳过且之前有跳过的tick时先补上计时器
+     * @return true 表示本tick跳过 Entity.tick
+     */
+    public static boolean shouldSkip(Entity entity) {
+        Level level = entity.level();
+        SkipCounter counter = (SkipCounter) entity;
+        // 玩家和载有乘客的实体始终正常tick（乘客不经过 tickNonPassenger）
+        if (!level.isClientSide && !(entity instanceof Player) && !entity.isVehicle() && !isTimerDriven(entity)
+            && isEnabled()) {
+            // 没有附近的玩家时不降频
+            var nearestPlayer = PlayerGrid.forLevel(level).nearest(entity.getX(), entity.getY(), entity.getZ(), 128);
+            if (nearestPlayer != null && !RoomManager.isVisibleToPlayer(level, entity.blockPosition(), nearestPlayer)) {
+                int interval = occludedInterval(entity.distanceToSqr(nearestPlayer));
+                if (!isScheduled(level.getGameTime(), entity.getId(), interval)) {
+                    counter.enclosedculling$setSkippedTicks(counter.enclosedculling$getSkippedTicks() + 1);
+                    return true;
+                }
+            }
+        }
+
+        int skipped = counter.enclosedculling$getSkippedTicks();
+        if (skipped > 0) {
+            catchUp(entity, skipped);
+            counter.enclosedculling$setSkippedTicks(0);
+        }
+        return false;
+    }
+
+    /**
+     * 自身计时器或运动只在 Entity.tick 中推进的实体，跳过的tick无法事后补偿，始终正常tick
+     */
+    public static boolean isTimerDriven(Entity entity) {
+        return entity instanceof PrimedTnt
+            || entity instanceof ItemEntity
+            || entity instanceof ExperienceOrb
+            || entity instanceof Projectile
+            || entity instanceof FallingBlockEntity;
+    }
+
+    /**
+     * 补上跳过的tick对 baseTick 中倒计时的影响：传送门冷却、受伤无敌时间
+     * @param missed 上次执行后跳过的tick数
+     */
+    public static void catchUp(Entity entity, int missed) {
+        if (missed <= 0) return;
+        int portalCooldown = entity.getPortalCooldown();
+        if (portalCooldown > 0) {
+            entity.setPortalCooldown(countDown(portalCooldown, missed));
+        }
+        if (entity.invulnerableTime > 0) {
+            entity.invulnerableTime = countDown(entity.invulnerableTime, missed);
+        }
+    }
+
+    /**
+     * 每tick减一、到 0 为止的倒计时在跳过 missed 个tick后的值
+     */
+    static int countDown(int timer, int missed) {
+        return Math.max(0, timer - missed);
+    }
+
+    public static double configuredNearDistance() {
+        try {
+            return ModConfig.COMMON.occludedNearDistance.get();
+        } catch (Exception e) {
+            return DEFAULT_NEAR_DISTANCE;
+        }
+    }
+
+    public static int configuredNearInterval() {
+        try {
+            return ModConfig.COMMON.occludedNearInterval.get();
+        } catch (Exception e) {
+            return DEFAULT_NEAR_INTERVAL;
+        }
+    }
+
+    public static int configuredFarInterval() {
+        try {
+            return ModConfig.COMMON.occludedFarInterval.get();
+        } catch (Exception e) {
+            return DEFAULT_FAR_INTERVAL;
+        }
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 由 EntityTickMixin 加到 Entity 上：降频跳过、尚未补上的tick数
+     * （区块停止tick等其他原因造成的停顿不计入）
+     */
+    public interface SkipCounter {
+        int enclosedculling$getSkippedTicks();
+
+        void enclosedculling$setSkippedTicks(int ticks);
+    }
+}
@@ -0,0 +1,115 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import com.dongge0210.enclosedculling.room.RoomManager;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.BlockStateProperties;
+
+/**
+ * 方块状态透明度表 - 按 BlockState 全局ID（Block.BLOCK_STATE_REGISTRY）预先计算判定结果
+ * 字符串匹配和形状判断只在构建时对每个状态执行一次，之后每次查询都是一次数组读取
+ *
+ * 注册表冻结后构建；room_rules.properties 或自定义 BlockTransparencyJudge 变化时标记失效并在下次查询时重建，
+ * 同时使 PassabilityCache 的区段位图失效
+ */
+public class TransparencyTable {
+
+    // 与 PassabilityCache.Layer 的位一一对应
+    public static final int SPACE = 1;
+    public static final int ROOM = 1 << 1;
+    public static final int SIGHT = 1 << 2;
+    // 门类方块（门、栅栏门、活板门），以及其中处于打开状态的
+    public static final int DOOR = 1 << 3;
+    public static final int OPEN_DOOR = 1 << 4;
+
+    private static volatile byte[] table;
+
+    /**
+     * 构建整张表，注册表冻结后调用
+     */
+    public static synchronized void rebuild() {
+        table = buildTable();
+        PassabilityCache.invalidateAll();
+    }
+
+    /**
+     * 透明判定规则变化时调用：丢弃旧表和区段位图，下次查询时重建
+     */
+    public static synchronized void markDirty() {
+        table = null;
+        PassabilityCache.invalidateAll();
+    }
+
+    private static synchronized byte[] ensureBuilt() {
+        if (table == null) {
+            table = buildTable();
+        }
+        return table;
+    }
+
+    private static byte[] buildTable() {
+        long startTime = System.nanoTime();
+        byte[] newTable = new byte[Block.BLOCK_STATE_REGISTRY.size()];
+        for (BlockState state : Block.BLOCK_STATE_REGISTRY) {
+            int id = Block.getId(state);
+            if (id >= 0 && id < newTable.length) {
+                newTable[id] = (byte) computeFlags(state);
+            }
+        }
+        EnclosedSpaceRenderCulling.LOGGER.debug("Transparency table built: {} block states in {}ms",
+            newTable.length, (System.nanoTime() - startTime) / 1_000_000);
+        return newTable;
+    }
+
+    /**
+     * 获取方块状态的全部判定标记
+     */
+    public static int flags(BlockState state) {
+        byte[] current = table;
+        if (current == null) {
+            current = ensureBuilt();
+        }
+        int id = Block.getId(state);
+        if (id >= 0 && id < current.length) {
+            return current[id];
+        }
+        // 表构建之后才注册的状态（理论上不会出现）直接现场计算
+        return computeFlags(state);
+    }
+
+    public static boolean test(BlockState state, int flag) {
+        return (flags(state) & flag) != 0;
+    }
+
+    public static boolean isBuilt() {
+        return table != null;
+    }
+
+    private static int computeFlags(BlockState state) {
+        int flags = 0;
+        if (SpaceConnectivityAnalyzer.isAirOrTransparent(state)) {
+            flags |= SPACE;
+        }
+        if (RoomManager.getTransparencyJudge().isRoomTransparent(state)) {
+            flags |= ROOM;
+        }
+        // 与位置无关地判断完整渲染；绝大多数方块的形状已缓存在状态上
+        if (state.isAir() || !state.isSolidRender(EmptyBlockGetter.INSTANCE, BlockPos.ZERO)) {
+            flags |= SIGHT;
+        }
+
+        String blockName = state.getBlock().getDescriptionId();
+        if (blockName.contains("door") || blockName.contains("gate") ||
+            blockName.contains("fence_gate") || blockName.contains("trapdoor")) {
+            flags |= DOOR;
+            // 没有开关属性的门类方块视为打开（与原有判断一致）
+            if (!state.hasProperty(BlockStateProperties.OPEN) || state.getValue(BlockStateProperties.OPEN)) {
+                flags |= OPEN_DOOR;
+            }
+        }
+        return flags;
+    }
+}
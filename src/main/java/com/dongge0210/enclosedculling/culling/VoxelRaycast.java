@@ -0,0 +1,146 @@
+package com.dongge0210.enclosedculling.culling;
+
+import net.minecraft.core.BlockPos;
+
+/**
+ * 体素视线遍历 - 两级 Amanatides–Woo 算法：先按 16³ 区段遍历，再只在需要时逐个体素遍历
+ *
+ * 外层按射线经过的顺序访问区段，读取 PassabilityCache 在构建位图时计算的区段概要：
+ * 完全可通过的区段（空气、未加载、世界高度外）一步跳过，完全不可通过的区段立即返回，
+ * 只有混合区段（以及终点所在区段）才进入内层的体素遍历。两层使用同一个射线参数 t，
+ * 内层从射线进入区段时所在的体素开始，离开区段后交还外层。
+ *
+ * 全程只使用基本类型，不创建 BlockPos 或列表。射线包含起点体素、不包含终点体素（看到目标即视为可见）
+ */
+public final class VoxelRaycast {
+
+    private VoxelRaycast() {
+    }
+
+    /**
+     * 方块中心之间的视线
+     */
+    public static boolean isClear(PassabilityCache cache, PassabilityCache.Layer layer, BlockPos from, BlockPos to) {
+        return isClear(cache, layer, from.getX() + 0.5, from.getY() + 0.5, from.getZ() + 0.5,
+            to.getX() + 0.5, to.getY() + 0.5, to.getZ() + 0.5);
+    }
+
+    /**
+     * @return 从 (x0, y0, z0) 到 (x1, y1, z1) 的射线经过的体素（不含终点所在体素）是否全部可通过
+     */
+    public static boolean isClear(PassabilityCache cache, PassabilityCache.Layer layer,
+                                  double x0, double y0, double z0, double x1, double y1, double z1) {
+        int startX = (int) Math.floor(x0), startY = (int) Math.floor(y0), startZ = (int) Math.floor(z0);
+        int endX = (int) Math.floor(x1), endY = (int) Math.floor(y1), endZ = (int) Math.floor(z1);
+        if (startX == endX && startY == endY && startZ == endZ) return true;
+        double dx = x1 - x0, dy = y1 - y0, dz = z1 - z0;
+
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+        // 沿各轴前进一个体素所需的参数增量（射线参数 t 从 0 到 1）
+        double deltaX = stepX != 0 ? Math.abs(1.0 / dx) : Double.POSITIVE_INFINITY;
+        double deltaY = stepY != 0 ? Math.abs(1.0 / dy) : Double.POSITIVE_INFINITY;
+        double deltaZ = stepZ != 0 ? Math.abs(1.0 / dz) : Double.POSITIVE_INFINITY;
+
+        // 外层：区段坐标，以及到达下一个区段边界时的参数值
+        int sx = startX >> 4, sy = startY >> 4, sz = startZ >> 4;
+        double sectionMaxX = boundary(sx << 4, 16, stepX, x0, deltaX);
+        double sectionMaxY = boundary(sy << 4, 16, stepY, y0, deltaY);
+        double sectionMaxZ = boundary(sz << 4, 16, stepZ, z0, deltaZ);
+        double sectionDeltaX = deltaX * 16, sectionDeltaY = deltaY * 16, sectionDeltaZ = deltaZ * 16;
+
+        // 内层：当前体素及到达下一个体素边界时的参数值；entered 为 true 时表示它就是射线进入当前区段的体素
+        int x = startX, y = startY, z = startZ;
+        double maxX = boundary(x, 1, stepX, x0, deltaX);
+        double maxY = boundary(y, 1, stepY, y0, deltaY);
+        double maxZ = boundary(z, 1, stepZ, z0, deltaZ);
+        boolean entered = true;
+        // 射线进入当前区段时的参数值
+        double tEnter = 0;
+
+        while (true) {
+            long[] bits = cache.getSectionBits(sx, sy, sz);
+            int summary = PassabilityCache.summary(bits, layer);
+            boolean last = sx == endX >> 4 && sy == endY >> 4 && sz == endZ >> 4;
+
+            if (summary == PassabilityCache.SUMMARY_OPAQUE && !last) {
+                // 射线在区段内至少经过一个非终点体素
+                return false;
+            }
+            if (summary != PassabilityCache.SUMMARY_PASSABLE) {
+                if (!entered) {
+                    // 跳过的区段之后重新定位体素，夹取到区段范围内以消除边界上的舍入误差
+                    x = clamp((int) Math.floor(x0 + dx * tEnter), sx << 4);
+                    y = clamp((int) Math.floor(y0 + dy * tEnter), sy << 4);
+                    z = clamp((int) Math.floor(z0 + dz * tEnter), sz << 4);
+                    maxX = boundary(x, 1, stepX, x0, deltaX);
+                    maxY = boundary(y, 1, stepY, y0, deltaY);
+                    maxZ = boundary(z, 1, stepZ, z0, deltaZ);
+                }
+                double tExit;
+                while (true) {
+                    if (x == endX && y == endY && z == endZ) return true;
+                    if (!PassabilityCache.testBit(bits, x, y, z, layer)) return false;
+
+                    if (maxX <= maxY && maxX <= maxZ) {
+                        tExit = maxX;
+                        x += stepX;
+                        maxX += deltaX;
+                    } else if (maxY <= maxZ) {
+                        tExit = maxY;
+                        y += stepY;
+                        maxY += deltaY;
+                    } else {
+                        tExit = maxZ;
+                        z += stepZ;
+                        maxZ += deltaZ;
+                    }
+                    if (x >> 4 != sx || y >> 4 != sy || z >> 4 != sz) break;
+                }
+                // 外层跟随内层实际进入的区段，两层在边和角上的取舍保持一致
+                sx = x >> 4;
+                sy = y >> 4;
+                sz = z >> 4;
+                sectionMaxX = boundary(sx << 4, 16, stepX, x0, deltaX);
+                sectionMaxY = boundary(sy << 4, 16, stepY, y0, deltaY);
+                sectionMaxZ = boundary(sz << 4, 16, stepZ, z0, deltaZ);
+                tEnter = tExit;
+                entered = true;
+                if (tEnter > 1) return true;
+                continue;
+            }
+            if (last) return true;
+
+            if (sectionMaxX <= sectionMaxY && sectionMaxX <= sectionMaxZ) {
+                tEnter = sectionMaxX;
+                sx += stepX;
+                sectionMaxX += sectionDeltaX;
+            } else if (sectionMaxY <= sectionMaxZ) {
+                tEnter = sectionMaxY;
+                sy += stepY;
+                sectionMaxY += sectionDeltaY;
+            } else {
+                tEnter = sectionMaxZ;
+                sz += stepZ;
+                sectionMaxZ += sectionDeltaZ;
+            }
+            entered = false;
+            // 浮点误差使射线越过终点时停止
+            if (tEnter > 1) return true;
+        }
+    }
+
+    /**
+     * 从 [min, min + size) 单元出发，射线到达下一个单元边界时的参数值
+     */
+    private static double boundary(int min, int size, int step, double origin, double delta) {
+        if (step > 0) return (min + size - origin) * delta;
+        if (step < 0) return (origin - min) * delta;
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private static int clamp(int value, int sectionMin) {
+        return Math.max(sectionMin, Math.min(sectionMin + 15, value));
+    }
+}
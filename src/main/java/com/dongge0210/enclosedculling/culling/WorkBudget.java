@@ -0,0 +1,105 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.config.ModConfig;
+
+/**
+ * 每帧/每tick的剔除工作预算 - 由 ModConfig 的 maxCullingChecksPerTick 和 cullingCheckTimeLimit 决定
+ * 泛洪填充、房间检测和区段构建在预算用完时暂停，保留前沿，下一帧/tick继续
+ *
+ * 一次"检查"对应 STEPS_PER_CHECK 个泛洪步骤，或构建一个区段位图；
+ * 时间每隔若干次消耗才读取一次，避免频繁调用 System.nanoTime
+ * 非线程安全，每个线程使用自己的实例
+ */
+public final class WorkBudget {
+
+    public static final int STEPS_PER_CHECK = 64;
+
+    private static final int DEFAULT_CHECKS = 100;
+    private static final double DEFAULT_TIME_LIMIT_MS = 5.0;
+    private static final int TIME_CHECK_INTERVAL = 8;
+
+    private int remainingChecks;
+    private int stepsInCheck;
+    private int checksSinceTimeRead;
+    private long deadline;
+    private boolean timeLimited;
+    private boolean exhausted;
+
+    /**
+     * 以指定限制重新开始计时
+     * @param timeLimitMillis 为 Double.POSITIVE_INFINITY 时不限制时间
+     */
+    public WorkBudget reset(int maxChecks, double timeLimitMillis) {
+        remainingChecks = maxChecks;
+        stepsInCheck = 0;
+        checksSinceTimeRead = 0;
+        timeLimited = !Double.isInfinite(timeLimitMillis);
+        deadline = timeLimited ? System.nanoTime() + (long) (timeLimitMillis * 1_000_000.0) : 0L;
+        exhausted = maxChecks <= 0;
+        return this;
+    }
+
+    /**
+     * 以配置中的限制重新开始计时，配置尚未加载时使用默认值
+     */
+    public WorkBudget resetFromConfig() {
+        return reset(configuredChecks(), configuredTimeLimitMillis());
+    }
+
+    /**
+     * 不受限制的预算，供同步调用（调试命令、基准测试）使用
+     */
+    public static WorkBudget unlimited() {
+        return new WorkBudget().reset(Integer.MAX_VALUE, Double.POSITIVE_INFINITY);
+    }
+
+    public static int configuredChecks() {
+        try {
+            return ModConfig.COMMON.maxCullingChecksPerTick.get();
+        } catch (Exception e) {
+            return DEFAULT_CHECKS;
+        }
+    }
+
+    public static double configuredTimeLimitMillis() {
+        try {
+            return ModConfig.COMMON.cullingCheckTimeLimit.get();
+        } catch (Exception e) {
+            return DEFAULT_TIME_LIMIT_MS;
+        }
+    }
+
+    /**
+     * 消耗一个泛洪步骤
+     * @return false 表示预算已用完，调用方应保存进度并返回
+     */
+    public boolean tryStep() {
+        if (exhausted) return false;
+        if (++stepsInCheck < STEPS_PER_CHECK) return true;
+        stepsInCheck = 0;
+        return tryCheck();
+    }
+
+    /**
+     * 消耗一次完整的检查（例如构建一个区段）
+     */
+    public boolean tryCheck() {
+        if (exhausted) return false;
+        if (--remainingChecks < 0) {
+            exhausted = true;
+            return false;
+        }
+        if (timeLimited && ++checksSinceTimeRead >= TIME_CHECK_INTERVAL) {
+            checksSinceTimeRead = 0;
+            if (System.nanoTime() >= deadline) {
+                exhausted = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+}
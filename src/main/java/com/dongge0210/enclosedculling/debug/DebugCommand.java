@@ -2,6 +2,7 @@ package com.dongge0210.enclosedculling.debug;
 
 import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
 import com.dongge0210.enclosedculling.config.ModConfig;
+import com.dongge0210.enclosedculling.room.RoomInfo;
 import com.dongge0210.enclosedculling.room.RoomManager;
 import com.dongge0210.enclosedculling.culling.SpaceConnectivityAnalyzer;
 import com.dongge0210.enclosedculling.compat.EntityCullingCompatibility;
@@ -231,8 +232,10 @@ public class DebugCommand {
             
             RoomManager.debugHighlightRoom(level, roomId, player);
             
+            RoomInfo info = RoomManager.getRoomInfo(level, roomId);
             context.getSource().sendSuccess(() -> 
-                Component.literal("§a[EnclosedCulling] 房间 " + roomId + " 已高亮显示！"), false);
+                Component.literal("§a[EnclosedCulling] 房间 " + roomId + " 已高亮显示！"
+                    + (info != null ? "\n§7" + info : "")), false);
             
             return 1;
         } catch (Exception e) {
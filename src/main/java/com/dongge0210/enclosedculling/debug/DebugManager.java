@@ -482,8 +482,9 @@ public class DebugManager {
         // 房间信息 - 房间ID是标识符，不需要格式化
         try {
             BlockPos playerPos = mc.player.blockPosition();
-            Integer roomId = RoomManager.getRoomIdAt(mc.level, playerPos);
-            Integer groupId = RoomManager.getGroupIdAt(mc.level, playerPos);
+            // 每帧绘制，只查询已检测的房间，未检测的排队等待
+            Integer roomId = RoomManager.findRoomAt(mc.level, playerPos);
+            Integer groupId = RoomManager.findGroupAt(mc.level, playerPos);
             
             String roomIdStr = roomId != null ? roomId.toString() : "§c未知";
             String groupIdStr = groupId != null ? groupId.toString() : "§c未知";
@@ -525,8 +526,8 @@ public class DebugManager {
         
         // 缓存信息
         try {
-            String cacheInfo = String.format("§7区块缓存: §f%d §7| 调试条目: §f%d",
-                RoomManager.getChunkCacheSize(), debugInfo.size());
+            String cacheInfo = String.format("§7视线缓存: §f%d §7| 调试条目: §f%d",
+                RoomManager.getSightCacheSize(), debugInfo.size());
             graphics.drawString(mc.font, Component.literal(cacheInfo), x, currentY, 0xFFFFFF);
             currentY += lineHeight;
         } catch (Exception e) {
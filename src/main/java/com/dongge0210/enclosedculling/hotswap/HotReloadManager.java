@@ -2,6 +2,7 @@ package com.dongge0210.enclosedculling.hotswap;
 
 import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
 import com.dongge0210.enclosedculling.config.ModConfig;
+import com.dongge0210.enclosedculling.room.RoomManager;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.event.config.ModConfigEvent;
@@ -135,6 +136,12 @@ public class HotReloadManager {
             } catch (IOException e) {
                 EnclosedSpaceRenderCulling.LOGGER.error("Failed to setup config watcher", e);
             }
+            
+            // 监听房间透明规则文件，变化后重建方块透明度表
+            registerFileWatcher(configDir.resolve("room_rules.properties"), file -> {
+                EnclosedSpaceRenderCulling.LOGGER.info("Room rules changed, reloading: " + file);
+                RoomManager.reloadConfig();
+            });
         }
     }
     
@@ -0,0 +1,21 @@
+package com.dongge0210.enclosedculling.mixin;
+
+import com.dongge0210.enclosedculling.culling.CacheInvalidationBus;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+// 客户端和服务端的方块变化最终都经过 Level.setBlock,在这里通知剔除缓存失效
+@Mixin(Level.class)
+public class LevelMixin {
+    @Inject(method = "setBlock(Lnet/minecraft/core/BlockPos;Lnet/minecraft/world/level/block/state/BlockState;II)Z", at = @At("RETURN"))
+    private void onSetBlock(BlockPos pos, BlockState state, int flags, int recursionLeft, CallbackInfoReturnable<Boolean> cir) {
+        if (cir.getReturnValueZ()) {
+            CacheInvalidationBus.blockChanged((Level) (Object) this, pos);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.dongge0210.enclosedculling.mixin;
 
 import com.dongge0210.enclosedculling.client.CullingRenderer;
+import com.dongge0210.enclosedculling.culling.SectionVisibilityGraph;
+import com.dongge0210.enclosedculling.culling.SpaceCullingManager;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.client.renderer.chunk.ChunkRenderDispatcher;
@@ -23,7 +25,15 @@ public class LevelRendererMixin {
                 }
                 
                 BlockPos chunkPos = renderChunk.getOrigin();
-                if (CullingRenderer.isPositionOccluded(mc.level, chunkPos, mc.player.position())) {
+                // 优先使用区段可见性图；尚无结果时退回逐区块的遮挡检测
+                SectionVisibilityGraph graph = SpaceCullingManager.getSectionGraph();
+                boolean occluded;
+                if (graph != null && graph.world == mc.level && graph.hasResult()) {
+                    occluded = !graph.isReachable(chunkPos);
+                } else {
+                    occluded = CullingRenderer.isPositionOccluded(mc.level, chunkPos, mc.player.getEyePosition());
+                }
+                if (occluded) {
                     cir.setReturnValue(false);
                     // 调试信息：成功剔除了一个区块
                     com.dongge0210.enclosedculling.debug.DebugManager.setDebugInfo("last_chunk_culled", chunkPos.toShortString());
@@ -0,0 +1,15 @@
+package com.dongge0210.enclosedculling.mixin;
+
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import java.util.List;
+
+// 访问世界的方块实体tick列表，供 DormantBlockEntities 移出和放回被遮挡的方块实体
+@Mixin(Level.class)
+public interface LevelTickersAccessor {
+    @Accessor("blockEntityTickers")
+    List<TickingBlockEntity> enclosedculling$getBlockEntityTickers();
+}
@@ -1,6 +1,7 @@
 
 package com.dongge0210.enclosedculling.mixin;
 
+import net.minecraftforge.fml.loading.LoadingModList;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.mixin.extensibility.IMixinConfigPlugin;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
@@ -28,14 +29,14 @@ public class MixinConfigPlugin implements IMixinConfigPlugin {
         // 动态决定是否应用特定的Mixin
         
         // 对于Create相关的Mixin，检查Create是否存在
+        // 只查询模组列表，不能在这里加载目标类，否则 Mixin 无法再修改它
         if (mixinClassName.contains("SmartBlockEntityMixin")) {
-            try {
-                Class.forName("com.simibubi.create.foundation.blockEntity.SmartBlockEntity");
+            LoadingModList mods = LoadingModList.get();
+            if (mods != null && mods.getModFileById("create") != null) {
                 return true; // Create存在，应用Mixin
-            } catch (ClassNotFoundException e) {
-                System.out.println("[EnclosedCulling] Create模组未找到，跳过SmartBlockEntityMixin");
-                return false; // Create不存在，跳过Mixin
             }
+            System.out.println("[EnclosedCulling] Create模组未找到，跳过SmartBlockEntityMixin");
+            return false; // Create不存在，跳过Mixin
         }
         
         return true; // 其他Mixin正常应用
@@ -0,0 +1,20 @@
+package com.dongge0210.enclosedculling.mixin;
+
+import com.dongge0210.enclosedculling.culling.TickLod;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+
+// 被遮挡实体的tick降频：在调用处跳过整个 Entity.tick，而不是只跳过其中的 baseTick
+@Mixin(ServerLevel.class)
+public class ServerLevelMixin {
+    @WrapOperation(method = "tickNonPassenger", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/entity/Entity;tick()V"))
+    private void onTickNonPassenger(Entity entity, Operation<Void> original) {
+        if (!TickLod.shouldSkip(entity)) {
+            original.call(entity);
+        }
+    }
+}
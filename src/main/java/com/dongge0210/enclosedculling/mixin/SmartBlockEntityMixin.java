@@ -1,34 +1,38 @@
 package com.dongge0210.enclosedculling.mixin;
 
+import com.dongge0210.enclosedculling.culling.PlayerGrid;
 import com.dongge0210.enclosedculling.room.RoomManager;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
-import java.util.UUID;
-
 // 使用字符串目标，完全避免编译时加载Create类
 @Mixin(targets = "com.simibubi.create.foundation.blockEntity.SmartBlockEntity", remap = false)
 public class SmartBlockEntityMixin {
     
-    @Inject(method = "tick", at = @At("HEAD"), cancellable = true, remap = false)
-    private void onSmartTick(Level level, BlockPos pos, CallbackInfo ci) {
+    // SmartBlockEntity.tick() 没有参数；Create 版本变化导致找不到方法时不阻止游戏启动
+    @Inject(method = "tick()V", at = @At("HEAD"), cancellable = true, remap = false, require = 0)
+    private void onSmartTick(CallbackInfo ci) {
         // 运行时检查Create是否真的存在
         if (!com.dongge0210.enclosedculling.compat.CreateCompatibility.isCreateLoaded()) {
             return; // Create未加载，跳过处理
         }
         
+        BlockEntity self = (BlockEntity) (Object) this;
+        Level level = self.getLevel();
+        if (level == null || level.isClientSide) return;
+        BlockPos pos = self.getBlockPos();
         try {
             // 获取最近玩家
-            var player = level.getNearestPlayer(pos.getX(), pos.getY(), pos.getZ(), 128, false);
+            var player = PlayerGrid.forLevel(level).nearest(pos.getX(), pos.getY(), pos.getZ(), 128);
             if (player == null) return; // 没玩家直接不剔除
             
-            UUID playerId = player.getUUID();
             // 判断是否在玩家可见空间,不可见则跳过tick
-            if (!RoomManager.isPositionVisible(level, pos, player.blockPosition(), playerId)) {
+            if (!RoomManager.isVisibleToPlayer(level, pos, player)) {
                 ci.cancel();
             }
         } catch (Exception e) {
@@ -0,0 +1,199 @@
+package com.dongge0210.enclosedculling.room;
+
+import com.dongge0210.enclosedculling.config.ModConfig;
+import com.dongge0210.enclosedculling.culling.CacheInvalidationBus;
+import com.dongge0210.enclosedculling.culling.PlayerGrid;
+import com.dongge0210.enclosedculling.mixin.LevelTickersAccessor;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
+import net.minecraftforge.registries.ForgeRegistries;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 休眠的方块实体 - 玩家看不到的房间中的机器被移出世界的方块实体tick列表，按房间保存，
+ * 休眠期间每tick的开销为零（不再有tick钩子）
+ *
+ * 每 SWEEP_INTERVAL tick 扫描一次世界的tick列表：类型在休眠策略中、附近（128格内）最近的玩家
+ * 所在连通群不包含其房间的方块实体进入休眠。房间快照发布新版本、或每次扫描时检查休眠的房间，
+ * 对最近的玩家可见或附近已没有玩家时放回tick列表；房间失效（方块变化、区块卸载）时立即放回。
+ * 休眠策略由 ModConfig 的 dormantBlockEntityTypes（模组ID或完整类型ID）从注册表解析为
+ * BlockEntityType 集合。只处理服务端世界，只在服务端线程上访问
+ */
+public final class DormantBlockEntities {
+    private static final int SWEEP_INTERVAL = 20;
+    private static final double PLAYER_RANGE = 128;
+
+    private static final Map<Level, DormantBlockEntities> INSTANCES = new ConcurrentHashMap<>();
+
+    // 休眠策略：解析自配置列表，配置变化时重新解析
+    private static List<? extends String> policySource;
+    private static Set<BlockEntityType<?>> policy = Set.of();
+
+    static {
+        CacheInvalidationBus.register(new CacheInvalidationBus.Listener() {
+            @Override
+            public void onBlockChanged(Level level, BlockPos pos, long sectionKey) {
+            }
+
+            @Override
+            public void onLevelUnloaded(Level level) {
+                INSTANCES.remove(level);
+            }
+        });
+    }
+
+    private final ServerLevel level;
+    // 房间ID -> 休眠的 ticker
+    private final Map<Integer, List<TickingBlockEntity>> dormant = new HashMap<>();
+    private int dormantCount;
+    private long lastEpoch = -1;
+
+    private DormantBlockEntities(ServerLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * 由 RoomDetectionScheduler 在房间快照发布后为每个服务端世界调用
+     */
+    public static void tick(ServerLevel level) {
+        if (!isEnabled()) {
+            wakeAll(level);
+            return;
+        }
+        DormantBlockEntities state = INSTANCES.computeIfAbsent(level, l -> new DormantBlockEntities((ServerLevel) l));
+        long epoch = RoomManager.getSnapshot(level).getEpoch();
+        boolean sweep = level.getGameTime() % SWEEP_INTERVAL == 0;
+        if (sweep || epoch != state.lastEpoch) {
+            state.wakeVisible();
+            state.lastEpoch = epoch;
+        }
+        if (sweep) {
+            state.sleepOccluded();
+        }
+    }
+
+    /**
+     * 房间失效时放回其中休眠的方块实体
+     */
+    static void wakeRoom(Level level, int roomId) {
+        DormantBlockEntities state = INSTANCES.get(level);
+        if (state == null) return;
+        List<TickingBlockEntity> tickers = state.dormant.remove(roomId);
+        if (tickers != null) {
+            state.wake(tickers);
+        }
+    }
+
+    /**
+     * 放回世界中全部休眠的方块实体
+     */
+    static void wakeAll(Level level) {
+        DormantBlockEntities state = INSTANCES.get(level);
+        if (state == null) return;
+        for (List<TickingBlockEntity> tickers : state.dormant.values()) {
+            state.wake(tickers);
+        }
+        state.dormant.clear();
+    }
+
+    public static int getDormantCount() {
+        int count = 0;
+        for (DormantBlockEntities state : INSTANCES.values()) {
+            count += state.dormantCount;
+        }
+        return count;
+    }
+
+    // 休眠的房间对最近的玩家可见、附近没有玩家或房间已不在快照中时放回
+    private void wakeVisible() {
+        if (dormant.isEmpty()) return;
+        PlayerGrid players = PlayerGrid.forLevel(level);
+        RoomSnapshot snapshot = RoomManager.getSnapshot(level);
+        Iterator<Map.Entry<Integer, List<TickingBlockEntity>>> it = dormant.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, List<TickingBlockEntity>> entry = it.next();
+            int roomId = entry.getKey();
+            BlockPos pos = entry.getValue().get(0).getPos();
+            Player nearest = players.nearest(pos.getX(), pos.getY(), pos.getZ(), PLAYER_RANGE);
+            if (nearest == null || snapshot.getGroup(roomId) == -1 || snapshot.isRoomVisibleTo(nearest.getUUID(), roomId)) {
+                wake(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private void sleepOccluded() {
+        Set<BlockEntityType<?>> types = resolvePolicy();
+        PlayerGrid players = PlayerGrid.forLevel(level);
+        if (types.isEmpty() || players.getPlayerCount() == 0) return;
+        // Mixin 配置未加载时无法访问tick列表，不做任何事
+        if (!(level instanceof LevelTickersAccessor accessor)) return;
+        List<TickingBlockEntity> tickers = accessor.enclosedculling$getBlockEntityTickers();
+        tickers.removeIf(ticker -> {
+            // 已移除的由世界自己清理
+            if (ticker.isRemoved()) return false;
+            BlockPos pos = ticker.getPos();
+            Player nearest = players.nearest(pos.getX(), pos.getY(), pos.getZ(), PLAYER_RANGE);
+            if (nearest == null) return false;
+            BlockEntity blockEntity = level.getBlockEntity(pos);
+            if (blockEntity == null || !types.contains(blockEntity.getType())) return false;
+            int roomId = RoomManager.getOccludedRoom(level, pos, nearest);
+            if (roomId == RoomSection.NO_ROOM) return false;
+            dormant.computeIfAbsent(roomId, k -> new ArrayList<>()).add(ticker);
+            dormantCount++;
+            return true;
+        });
+    }
+
+    private void wake(List<TickingBlockEntity> tickers) {
+        for (TickingBlockEntity ticker : tickers) {
+            // 世界正在遍历tick列表时会先放入待加入列表
+            if (!ticker.isRemoved()) level.addBlockEntityTicker(ticker);
+        }
+        dormantCount -= tickers.size();
+    }
+
+    private static boolean isEnabled() {
+        try {
+            return ModConfig.COMMON.enableDormantBlockEntities.get();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Set<BlockEntityType<?>> resolvePolicy() {
+        List<? extends String> configured;
+        try {
+            configured = ModConfig.COMMON.dormantBlockEntityTypes.get();
+        } catch (Exception e) {
+            return Set.of();
+        }
+        if (configured != policySource) {
+            Set<BlockEntityType<?>> types = new HashSet<>();
+            for (Map.Entry<ResourceKey<BlockEntityType<?>>, BlockEntityType<?>> entry : ForgeRegistries.BLOCK_ENTITY_TYPES.getEntries()) {
+                ResourceLocation id = entry.getKey().location();
+                if (configured.contains(id.getNamespace()) || configured.contains(id.toString())) {
+                    types.add(entry.getValue());
+                }
+            }
+            policy = types;
+            policySource = configured;
+        }
+        return policy;
+    }
+}
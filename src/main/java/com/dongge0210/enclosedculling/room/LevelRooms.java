@@ -0,0 +1,557 @@
+package com.dongge0210.enclosedculling.room;
+
+import com.dongge0210.enclosedculling.culling.WorkBudget;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.particles.ParticleTypes;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个世界的房间状态 - 房间归属、元数据、连通群、玩家所在房间、视线缓存和排队中的检测
+ *
+ * 每个 Level 对象一份（由 RoomManager.forLevel 获取），单人游戏中集成服务端与客户端的世界互不共享，
+ * 不同维度也各自独立，房间ID只在本世界内唯一。
+ *
+ * 房间、连通群和玩家所在房间由所属世界的线程独占修改（普通集合，不加锁），每tick结束时 publish
+ * 把连通群和玩家所在房间整理为不可变的 RoomSnapshot 并通过 volatile 引用发布，其他读取方只读快照
+ */
+final class LevelRooms {
+    private static final int MAX_PENDING_ROOM_TASKS = 16;
+    private static final long ROOM_CHECK_COOLDOWN = 3000; // 3秒冷却时间，减少频繁变化
+    private static final int[][] DIRECTIONS = {
+        {1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}
+    };
+
+    final Level level;
+
+    // --- 房间与连通群 ---
+    // 房间归属：按区段的调色板位图
+    private final RoomSectionStorage storage = new RoomSectionStorage();
+    // 房间元数据：方块数、包围盒、占用区段、门户数；统计和查询直接读取，不再遍历方块
+    private final Map<Integer, RoomInfo> rooms = new HashMap<>();
+    private final AtomicLong totalRoomVoxels = new AtomicLong();
+    private final RoomIdAllocator roomIds = new RoomIdAllocator();
+    // 已失效、等待下一次发布后才回收的房间ID：已发布的快照仍把它们映射到旧的连通群，立即复用会被读成错误的群
+    private int[] pendingRelease = new int[16];
+    private int pendingReleaseCount;
+    // 连通群：并查集，合并和查询接近 O(1)
+    private final RoomGroups roomGroups = new RoomGroups();
+    // 玩家所在房间；连通群在查询时由并查集求出，合并后不会过期
+    private final Map<UUID, Integer> playerRoomCache = new HashMap<>();
+    // 反向索引：区块列包含的房间，用于只失效受区块重新加载影响的房间
+    private final Map<Long, Set<Integer>> chunkToRoomIds = new HashMap<>();
+
+    // --- 发布给读取方的快照 ---
+    private volatile RoomSnapshot snapshot = RoomSnapshot.EMPTY;
+    // 自上次发布以来房间、连通群或玩家所在房间是否有变化
+    private boolean dirty;
+
+    // --- 视线缓存 ---
+    // （观察者区段, 目标区段）-> 是否可见，同一区段的玩家共用，方块变化时按包围盒失效
+    private final SectionSightCache sightCache;
+
+    // --- 排队中的房间检测 ---
+    private final Deque<RoomDetectionTask> pendingRoomTasks = new ConcurrentLinkedDeque<>();
+
+    // --- 房间ID稳定性 ---
+    private final Map<String, Integer> playerLastRoomId = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastRoomCheckTime = new ConcurrentHashMap<>();
+    private final Map<String, BlockPos> playerLastPosition = new ConcurrentHashMap<>();
+
+    LevelRooms(Level level) {
+        this.level = level;
+        this.sightCache = new SectionSightCache(level);
+    }
+
+    // === 查询与检测 ===
+
+    /**
+     * @return 房间ID，未登记时为 RoomSection.NO_ROOM
+     */
+    int getRoomId(BlockPos pos) {
+        return storage.get(pos);
+    }
+
+    boolean isRoomAt(BlockPos pos) {
+        return storage.get(pos) != RoomSection.NO_ROOM;
+    }
+
+    int findGroup(int roomId) {
+        return roomGroups.find(roomId);
+    }
+
+    RoomInfo getRoomInfo(int roomId) {
+        return rooms.get(roomId);
+    }
+
+    void setPlayerRoom(UUID playerId, int roomId) {
+        Integer previous = playerRoomCache.put(playerId, roomId);
+        if (previous == null || previous != roomId) dirty = true;
+    }
+
+    /**
+     * 最近一次发布的快照，任何线程都可以读取
+     */
+    RoomSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 更新世界中玩家所在的房间，有变化时发布新快照；由所属世界的线程在每tick结束时调用
+     */
+    void publish() {
+        Set<UUID> present = new HashSet<>();
+        for (Player player : level.players()) {
+            present.add(player.getUUID());
+            Integer roomId = findRoomOrSchedule(player.blockPosition());
+            // 房间检测尚未完成，沿用之前的房间
+            if (roomId != null) setPlayerRoom(player.getUUID(), roomId);
+        }
+        // 下线或离开本世界的玩家不再保留所在房间
+        if (playerRoomCache.keySet().retainAll(present)) dirty = true;
+        if (!dirty) return;
+        dirty = false;
+        int maxId = 0;
+        for (int id : rooms.keySet()) {
+            maxId = Math.max(maxId, id);
+        }
+        int[] groupOf = new int[maxId + 1];
+        // 连通群 -> 群内房间位图，只为有玩家的群建立
+        Map<Integer, BitSet> groupRooms = new HashMap<>();
+        for (int id : rooms.keySet()) {
+            groupOf[id] = roomGroups.find(id);
+        }
+        for (int roomId : playerRoomCache.values()) {
+            if (roomId < groupOf.length && groupOf[roomId] > 0) {
+                groupRooms.putIfAbsent(groupOf[roomId], new BitSet(maxId + 1));
+            }
+        }
+        if (!groupRooms.isEmpty()) {
+            for (int id = 1; id <= maxId; id++) {
+                BitSet members = groupRooms.get(groupOf[id]);
+                if (members != null) members.set(id);
+            }
+        }
+        Map<UUID, BitSet> playerVisibleRooms = new HashMap<>();
+        for (Map.Entry<UUID, Integer> entry : playerRoomCache.entrySet()) {
+            int roomId = entry.getValue();
+            BitSet visible = roomId < groupOf.length ? groupRooms.get(groupOf[roomId]) : null;
+            if (visible != null) playerVisibleRooms.put(entry.getKey(), visible);
+        }
+        snapshot = new RoomSnapshot(snapshot.getEpoch() + 1, groupOf, rooms.size(), roomGroups.getGroupCount(),
+            Map.copyOf(playerRoomCache), Map.copyOf(playerVisibleRooms));
+        // 新快照已不含失效的房间，此后才能把它们的ID交给新房间
+        for (int i = 0; i < pendingReleaseCount; i++) {
+            roomIds.release(pendingRelease[i]);
+        }
+        pendingReleaseCount = 0;
+    }
+
+    int findOrCreateRoom(BlockPos pos) {
+        int existing = storage.get(pos);
+        if (existing != RoomSection.NO_ROOM) {
+            return existing;
+        }
+        // 同步检测（调试命令等需要立即得到结果的调用）
+        RoomDetectionTask task = new RoomDetectionTask(level, pos);
+        task.resume(WorkBudget.unlimited());
+        return registerRoom(task);
+    }
+
+    /**
+     * 查询房间，尚未检测时排队一个可恢复的检测任务并返回 null
+     * 任务在每tick的 WorkBudget 内推进（processPending），完成前调用方应按"未知"处理
+     */
+    Integer findRoomOrSchedule(BlockPos pos) {
+        int roomId = storage.get(pos);
+        if (roomId != RoomSection.NO_ROOM) return roomId;
+
+        for (RoomDetectionTask task : pendingRoomTasks) {
+            if (task.covers(pos)) return null;
+        }
+        if (pendingRoomTasks.size() < MAX_PENDING_ROOM_TASKS) {
+            pendingRoomTasks.add(new RoomDetectionTask(level, pos));
+        }
+        return null;
+    }
+
+    /**
+     * 在预算内推进排队中的房间检测
+     * @return false 表示预算已用完
+     */
+    boolean processPending(WorkBudget budget) {
+        RoomDetectionTask task;
+        while ((task = pendingRoomTasks.peek()) != null) {
+            if (!task.resume(budget)) return false;
+            pendingRoomTasks.poll();
+            // 排队期间可能已被同步检测登记
+            if (storage.get(task.start) == RoomSection.NO_ROOM) {
+                registerRoom(task);
+            }
+        }
+        return true;
+    }
+
+    int getPendingCount() {
+        return pendingRoomTasks.size();
+    }
+
+    // === 视线缓存 ===
+
+    /**
+     * @return 从观察者能否看到目标；区段对可见时为 true，遮挡只来自观察者自己的视线（见 SectionSightCache）
+     */
+    boolean isSectionVisible(BlockPos viewer, BlockPos target) {
+        return sightCache.isVisible(viewer, target);
+    }
+
+    void clearSightCache() {
+        sightCache.clear();
+    }
+
+    int getSightCacheSize() {
+        return sightCache.size();
+    }
+
+    int getSightCacheOccludedCount() {
+        return sightCache.getOccludedCount();
+    }
+
+    // === 登记 ===
+
+    private int allocateRoomId(BlockPos pos) {
+        // 坐标按 16x8x16 网格划分，同一网格内的检测沿用以该网格为起点建立的房间，
+        // 使相邻位置得到稳定的房间ID；否则分配新的紧凑ID。与已有房间数量无关，均为 O(1)
+        long cell = RoomSectionStorage.cellKey(pos);
+        int anchor = storage.getCellAnchor(cell);
+        if (anchor != RoomSection.NO_ROOM && rooms.containsKey(anchor)) {
+            return anchor;
+        }
+        int roomId = roomIds.allocate();
+        storage.setCellAnchor(cell, roomId);
+        return roomId;
+    }
+
+    // 登记检测完成的房间并合并相邻房间的连通群
+    int registerRoom(RoomDetectionTask task) {
+        int roomId = allocateRoomId(task.start);
+        RoomInfo info = RoomInfo.of(roomId, task, rooms.get(roomId));
+        rooms.put(roomId, info);
+        dirty = true;
+        long lastChunk = Long.MIN_VALUE;
+        for (int i = 0; i < task.getMemberCount(); i++) {
+            long p = task.getMember(i);
+            int previous = storage.put(p, roomId);
+            if (previous == roomId) continue;
+            info.addVoxel();
+            totalRoomVoxels.incrementAndGet();
+            if (previous != RoomSection.NO_ROOM) {
+                // 方块被新房间覆盖
+                RoomInfo previousInfo = rooms.get(previous);
+                if (previousInfo != null) {
+                    previousInfo.removeVoxel();
+                    totalRoomVoxels.decrementAndGet();
+                }
+            }
+            long chunkKey = chunkPosLong(BlockPos.getX(p) >> 4, BlockPos.getZ(p) >> 4);
+            if (chunkKey != lastChunk) {
+                chunkToRoomIds.computeIfAbsent(chunkKey, k -> new HashSet<>()).add(roomId);
+                lastChunk = chunkKey;
+            }
+        }
+        // 相邻房间 -> 共享的面数（门户）
+        Map<Integer, Integer> neighbourFaces = new HashMap<>();
+        BlockPos.MutableBlockPos adj = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < task.getMemberCount(); i++) {
+            long p = task.getMember(i);
+            for (int[] dir : DIRECTIONS) {
+                adj.set(BlockPos.getX(p) + dir[0], BlockPos.getY(p) + dir[1], BlockPos.getZ(p) + dir[2]);
+                int nearRoom = storage.get(adj);
+                if (nearRoom != RoomSection.NO_ROOM && nearRoom != roomId) neighbourFaces.merge(nearRoom, 1, Integer::sum);
+            }
+        }
+        roomGroups.add(roomId);
+        for (Map.Entry<Integer, Integer> entry : neighbourFaces.entrySet()) {
+            int near = entry.getKey();
+            roomGroups.union(roomId, near);
+            info.addPortals(near, entry.getValue());
+            RoomInfo nearInfo = rooms.get(near);
+            if (nearInfo != null) {
+                nearInfo.addPortals(roomId, entry.getValue());
+            }
+        }
+        return roomId;
+    }
+
+    // === 失效 ===
+
+    /**
+     * 方块变化后失效受影响的房间（所在位置及六个相邻位置所属的房间）、
+     * 覆盖该位置的排队检测，以及包围盒包含该区段的视线缓存；失效的房间在下次查询时重新检测
+     */
+    void invalidateAround(BlockPos pos) {
+        Set<Integer> affectedRooms = new HashSet<>();
+        int roomId = storage.get(pos);
+        if (roomId != RoomSection.NO_ROOM) affectedRooms.add(roomId);
+        BlockPos.MutableBlockPos adj = new BlockPos.MutableBlockPos();
+        for (int[] dir : DIRECTIONS) {
+            int near = storage.get(adj.set(pos.getX() + dir[0], pos.getY() + dir[1], pos.getZ() + dir[2]));
+            if (near != RoomSection.NO_ROOM) affectedRooms.add(near);
+        }
+        for (int id : affectedRooms) {
+            invalidateRoom(id);
+        }
+
+        pendingRoomTasks.removeIf(task -> task.covers(pos));
+        sightCache.onSectionChanged(SectionPos.asLong(pos));
+    }
+
+    /**
+     * 释放经过该区块列的房间、起点在该列的排队检测以及包围盒与该列相交的视线缓存
+     * @return {失效的房间数, 移除的视线缓存条目数}
+     */
+    int[] evictChunk(int chunkX, int chunkZ) {
+        if (level instanceof ServerLevel serverLevel) {
+            // 释放前先暂存到持久化区域，区块再次加载时可直接恢复
+            List<RoomPersistence.StoredRoom> evicted = new ArrayList<>();
+            Set<Integer> ids = chunkToRoomIds.get(chunkPosLong(chunkX, chunkZ));
+            if (ids != null) {
+                for (int id : ids) {
+                    RoomInfo info = rooms.get(id);
+                    if (info != null) {
+                        evicted.add(RoomPersistence.capture(info, storage));
+                    }
+                }
+            }
+            RoomPersistence.onChunkEvicted(serverLevel, chunkX, chunkZ, evicted, start -> isRoomAt(BlockPos.of(start)));
+        }
+        int[] dropped = dropChunk(chunkX, chunkZ);
+        pendingRoomTasks.removeIf(task -> (task.start.getX() >> 4) == chunkX && (task.start.getZ() >> 4) == chunkZ);
+        return dropped;
+    }
+
+    int[] dropChunk(int chunkX, int chunkZ) {
+        long chunkKey = chunkPosLong(chunkX, chunkZ);
+        Set<Integer> dropped = chunkToRoomIds.remove(chunkKey);
+        if (dropped != null) {
+            for (int id : dropped) {
+                invalidateRoom(id);
+            }
+        }
+        int sightEntries = sightCache.invalidateColumn(chunkX, chunkZ);
+        return new int[] {dropped != null ? dropped.size() : 0, sightEntries};
+    }
+
+    private void invalidateRoom(int roomId) {
+        RoomInfo info = rooms.remove(roomId);
+        int[] formerNeighbours = info != null ? info.getNeighbourIds() : new int[0];
+        if (info != null) {
+            // 位置可能已被之后检测的房间覆盖，只清除仍属于该房间的方块
+            storage.removeRoom(roomId, info.getSections());
+            storage.removeCellAnchor(info.getAnchorCell(), roomId);
+            totalRoomVoxels.addAndGet(-info.getVoxelCount());
+            for (int near : info.getNeighbourIds()) {
+                RoomInfo nearInfo = rooms.get(near);
+                if (nearInfo != null) {
+                    nearInfo.removePortals(roomId);
+                }
+            }
+        }
+        roomGroups.remove(roomId);
+        regroupAfterRemoval(formerNeighbours);
+        DormantBlockEntities.wakeRoom(level, roomId);
+        playerRoomCache.values().removeIf(id -> id == roomId);
+        dirty = true;
+        playerLastRoomId.values().removeIf(id -> id == roomId);
+        if (info != null) {
+            // 清除所有引用、并且发布不含该房间的快照之后才能回收ID
+            if (pendingReleaseCount == pendingRelease.length) {
+                pendingRelease = Arrays.copyOf(pendingRelease, pendingReleaseCount << 1);
+            }
+            pendingRelease[pendingReleaseCount++] = roomId;
+        }
+    }
+
+    /**
+     * 房间移除后它原来的邻居可能不再连通：从第一个邻居沿门户边搜索，其余邻居都能到达时群没有断开；
+     * 否则收集各邻居所在的连通部分，按当前的门户边重建这些房间的连通群
+     */
+    private void regroupAfterRemoval(int[] formerNeighbours) {
+        // 只有一个邻居时，移除它不会断开其余房间
+        if (formerNeighbours.length < 2) return;
+        Set<Integer> targets = new HashSet<>();
+        for (int near : formerNeighbours) {
+            if (rooms.containsKey(near)) targets.add(near);
+        }
+        if (targets.size() < 2) return;
+
+        Set<Integer> component = new HashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        int start = targets.iterator().next();
+        component.add(start);
+        queue.add(start);
+        targets.remove(start);
+        while (!queue.isEmpty() && !targets.isEmpty()) {
+            visitNeighbours(queue.poll(), component, queue, targets);
+        }
+        if (targets.isEmpty()) return;
+
+        // 群已断开：补全第一个连通部分，并收集其余邻居所在的连通部分
+        while (!queue.isEmpty()) {
+            visitNeighbours(queue.poll(), component, queue, targets);
+        }
+        for (int near : formerNeighbours) {
+            if (!rooms.containsKey(near) || !component.add(near)) continue;
+            queue.add(near);
+            while (!queue.isEmpty()) {
+                visitNeighbours(queue.poll(), component, queue, targets);
+            }
+        }
+
+        int[] members = new int[component.size()];
+        int i = 0;
+        // 第一个邻居放在最前，它所在的新群沿用原来的群ID
+        members[i++] = start;
+        for (int id : component) {
+            if (id != start) members[i++] = id;
+        }
+        roomGroups.rebuild(members, id -> {
+            RoomInfo member = rooms.get(id);
+            return member != null ? member.getNeighbourIds() : new int[0];
+        });
+    }
+
+    private void visitNeighbours(int roomId, Set<Integer> component, Deque<Integer> queue, Set<Integer> targets) {
+        RoomInfo info = rooms.get(roomId);
+        if (info == null) return;
+        for (int near : info.getNeighbourIds()) {
+            if (rooms.containsKey(near) && component.add(near)) {
+                queue.add(near);
+                targets.remove(near);
+            }
+        }
+    }
+
+    /**
+     * 清空全部房间状态
+     * @return 清除的房间数
+     */
+    int clear() {
+        int count = rooms.size();
+        DormantBlockEntities.wakeAll(level);
+        storage.clear();
+        rooms.clear();
+        roomIds.clear();
+        pendingReleaseCount = 0;
+        totalRoomVoxels.set(0);
+        roomGroups.clear();
+        playerRoomCache.clear();
+        playerLastRoomId.clear();
+        lastRoomCheckTime.clear();
+        playerLastPosition.clear();
+        clearSightCache();
+        pendingRoomTasks.clear();
+        chunkToRoomIds.clear();
+        dirty = true;
+        return count;
+    }
+
+    // === 持久化 ===
+
+    List<RoomPersistence.StoredRoom> captureRooms() {
+        List<RoomPersistence.StoredRoom> captured = new ArrayList<>(rooms.size());
+        for (RoomInfo info : rooms.values()) {
+            captured.add(RoomPersistence.capture(info, storage));
+        }
+        return captured;
+    }
+
+    /**
+     * 登记从存档恢复的房间；起点已属于某个房间（本次运行中已重新检测）时跳过
+     */
+    boolean restoreRoom(BlockPos start, long[] members) {
+        if (isRoomAt(start)) return false;
+        registerRoom(RoomDetectionTask.restored(level, start, members));
+        return true;
+    }
+
+    // === 调试与统计 ===
+
+    /**
+     * 获取指定位置的房间ID（带稳定性检查）
+     */
+    Integer getRoomIdAtStable(BlockPos pos, String playerId) {
+        long currentTime = System.currentTimeMillis();
+        Long lastCheck = lastRoomCheckTime.get(playerId);
+        BlockPos lastPos = playerLastPosition.get(playerId);
+
+        // 如果距离上次检查时间很短，或者玩家位置变化很小，返回缓存的房间ID
+        if (lastCheck != null && (currentTime - lastCheck) < ROOM_CHECK_COOLDOWN) {
+            Integer cachedId = playerLastRoomId.get(playerId);
+            if (cachedId != null) {
+                // 如果玩家位置变化很小（小于4格），直接返回缓存
+                if (lastPos != null && lastPos.distSqr(pos) < 16) {
+                    return cachedId;
+                }
+
+                // 验证缓存的房间ID是否仍然有效
+                if (storage.get(pos) == cachedId) {
+                    playerLastPosition.put(playerId, pos);
+                    return cachedId;
+                }
+            }
+        }
+
+        // 获取新的房间ID；尚未检测时排队检测，本次返回 null（按可见处理）
+        Integer roomId = findRoomOrSchedule(pos);
+        if (roomId == null) return null;
+        playerLastRoomId.put(playerId, roomId);
+        lastRoomCheckTime.put(playerId, currentTime);
+        playerLastPosition.put(playerId, pos);
+        return roomId;
+    }
+
+    // 在世界里给指定房间高亮（粒子特效），只访问房间自己的区段
+    void debugHighlightRoom(int roomId, ServerPlayer player) {
+        if (!(level instanceof ServerLevel serverLevel)) return;
+        RoomInfo info = rooms.get(roomId);
+        if (info == null) return;
+        storage.forEachVoxel(roomId, info.getSections(), p -> serverLevel.sendParticles(player, ParticleTypes.END_ROD, true,
+                BlockPos.getX(p) + 0.5, BlockPos.getY(p) + 0.5, BlockPos.getZ(p) + 0.5,
+                1, 0, 0, 0, 0.01));
+    }
+
+    long getTotalVoxels() {
+        return totalRoomVoxels.get();
+    }
+
+    int getSectionCount() {
+        return storage.getSectionCount();
+    }
+
+    long estimateStorageBytes() {
+        return storage.estimateBytes();
+    }
+
+    private static long chunkPosLong(int chunkX, int chunkZ) {
+        return ((long)chunkX & 0xFFFFFFFFL) | (((long)chunkZ & 0xFFFFFFFFL) << 32);
+    }
+}
@@ -0,0 +1,41 @@
+package com.dongge0210.enclosedculling.room;
+
+import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import com.dongge0210.enclosedculling.culling.WorkBudget;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * 房间检测调度 - 每tick在 WorkBudget 内推进排队中的房间检测
+ * 服务端与客户端各用一份预算，分别只推进自己世界的任务，之后发布各世界的房间快照，
+ * 服务端再按新快照让被遮挡的方块实体休眠或恢复
+ */
+@Mod.EventBusSubscriber(modid = EnclosedSpaceRenderCulling.MODID)
+public class RoomDetectionScheduler {
+
+    private static final WorkBudget SERVER_BUDGET = new WorkBudget();
+    private static final WorkBudget CLIENT_BUDGET = new WorkBudget();
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+        SERVER_BUDGET.resetFromConfig();
+        // 恢复持久化的房间比重新检测便宜，先处理
+        RoomPersistence.processRestores(SERVER_BUDGET);
+        RoomManager.processPendingRooms(false, SERVER_BUDGET);
+        RoomManager.publishSnapshots(false);
+        for (ServerLevel level : event.getServer().getAllLevels()) {
+            DormantBlockEntities.tick(level);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) return;
+        RoomManager.applyClientClear();
+        RoomManager.processPendingRooms(true, CLIENT_BUDGET.resetFromConfig());
+        RoomManager.publishSnapshots(true);
+    }
+}
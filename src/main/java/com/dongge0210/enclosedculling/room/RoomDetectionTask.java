@@ -0,0 +1,108 @@
+package com.dongge0210.enclosedculling.room;
+
+import com.dongge0210.enclosedculling.culling.PassabilityCache;
+import com.dongge0210.enclosedculling.culling.WorkBudget;
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import com.dongge0210.enclosedculling.util.LongQueue;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+
+/**
+ * 可恢复的房间检测 - 从起点泛洪可通过（ROOM 层）的方块，前沿保存在任务中，
+ * 按 WorkBudget 分片执行，完成后由 RoomManager 登记为房间
+ * 非线程安全，只在所属世界的线程上推进
+ */
+class RoomDetectionTask {
+    static final int MAX_ROOM_SIZE = 4096;
+
+    private static final int[] DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] DZ = {0, 0, 0, 0, 1, -1};
+
+    final Level level;
+    final BlockPos start;
+    private final PassabilityCache.View passability;
+    private final LongHashSet roomBlocks = new LongHashSet(MAX_ROOM_SIZE);
+    private final LongQueue queue = new LongQueue(256);
+    private long[] members = new long[256];
+    private int memberCount;
+    private boolean complete;
+
+    RoomDetectionTask(Level level, BlockPos start) {
+        this.level = level;
+        this.start = start.immutable();
+        this.passability = PassabilityCache.forLevel(level).view(PassabilityCache.Layer.ROOM);
+        long startKey = start.asLong();
+        queue.enqueue(startKey);
+        addMember(startKey);
+    }
+
+    // 从持久化数据恢复的房间，成员已知，不再泛洪
+    private RoomDetectionTask(Level level, BlockPos start, long[] members) {
+        this.level = level;
+        this.start = start.immutable();
+        this.passability = null;
+        for (long member : members) {
+            addMember(member);
+        }
+        this.complete = true;
+    }
+
+    static RoomDetectionTask restored(Level level, BlockPos start, long[] members) {
+        return new RoomDetectionTask(level, start, members);
+    }
+
+    /**
+     * 在预算内继续泛洪
+     * @return true 表示检测已经完成
+     */
+    boolean resume(WorkBudget budget) {
+        if (complete) return true;
+
+        while (!queue.isEmpty() && memberCount < MAX_ROOM_SIZE) {
+            if (!budget.tryStep()) {
+                return false;
+            }
+            long curr = queue.dequeue();
+            for (int d = 0; d < 6; d++) {
+                long next = BlockPos.offset(curr, DX[d], DY[d], DZ[d]);
+                if (roomBlocks.contains(next)) continue;
+                if (passability.isPassable(next)) {
+                    queue.enqueue(next);
+                    addMember(next);
+                }
+            }
+        }
+        complete = true;
+        return true;
+    }
+
+    private void addMember(long key) {
+        roomBlocks.add(key);
+        if (memberCount == members.length) {
+            members = Arrays.copyOf(members, memberCount << 1);
+        }
+        members[memberCount++] = key;
+    }
+
+    /**
+     * 位置是否已被本任务探索到（用于避免为同一房间重复排队）
+     */
+    boolean covers(BlockPos pos) {
+        return roomBlocks.contains(pos.asLong());
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    int getMemberCount() {
+        return memberCount;
+    }
+
+    long getMember(int index) {
+        return members[index];
+    }
+}
@@ -0,0 +1,268 @@
+package com.dongge0210.enclosedculling.room;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * 房间连通群 - 基于原始 int 数组的并查集（路径压缩 + 按秩合并）
+ * 合并与查询均接近 O(1)，不再需要遍历并改写群内每个房间
+ *
+ * 房间ID通过内部的开放寻址表映射为连续下标。连通群ID在建群时递增分配、从不复用，
+ * 合并后保留秩较大一方的ID（房间ID可能在房间失效后被重新分配，不能再用"群内最小房间ID"作为群ID）。
+ * 并查集本身不支持拆分，移除的房间只从ID表中删除，其下标作为内部节点保留以维持其余成员的连通关系，
+ * 移除的节点过多时整体重建。移除房间可能把一个群断开，调用方应随后用 rebuild 按当前的门户边重建受影响的群。
+ * 所有操作都持有对象锁，保证多线程下合并是原子的
+ */
+class RoomGroups {
+    private static final int EMPTY = 0;
+    private static final int REMOVED = 0;
+
+    // 并查集节点（按下标）
+    private int[] parent = new int[256];
+    private byte[] rank = new byte[256];
+    private int[] groupId = new int[256];     // 仅根节点有效：连通群ID
+    private int[] liveMembers = new int[256]; // 仅根节点有效：群内未移除的房间数
+    private int[] roomOf = new int[256];      // 下标对应的房间ID，已移除为 REMOVED
+    private int nodeCount;
+    private int liveCount;
+    private int groupCount;
+    private int nextGroupId = 1;
+
+    // 房间ID -> 下标（线性探测，0 为空槽）
+    private int[] mapKeys = new int[512];
+    private int[] mapValues = new int[512];
+    private int mapMask = 511;
+
+    public synchronized boolean contains(int roomId) {
+        return indexOf(roomId) >= 0;
+    }
+
+    /**
+     * 加入一个独立成群的房间，已存在时不做任何事
+     */
+    public synchronized void add(int roomId) {
+        if (roomId == EMPTY || indexOf(roomId) >= 0) return;
+        if (nodeCount == parent.length) {
+            int capacity = parent.length << 1;
+            parent = Arrays.copyOf(parent, capacity);
+            rank = Arrays.copyOf(rank, capacity);
+            groupId = Arrays.copyOf(groupId, capacity);
+            liveMembers = Arrays.copyOf(liveMembers, capacity);
+            roomOf = Arrays.copyOf(roomOf, capacity);
+        }
+        int index = nodeCount++;
+        parent[index] = index;
+        rank[index] = 0;
+        groupId[index] = nextGroupId++;
+        liveMembers[index] = 1;
+        roomOf[index] = roomId;
+        mapPut(roomId, index);
+        liveCount++;
+        groupCount++;
+    }
+
+    /**
+     * 获取房间所在连通群的ID，未知房间返回 -1
+     */
+    public synchronized int find(int roomId) {
+        int index = indexOf(roomId);
+        return index < 0 ? -1 : groupId[root(index)];
+    }
+
+    /**
+     * 合并两个房间所在的连通群，未知房间会先加入
+     */
+    public synchronized void union(int roomA, int roomB) {
+        add(roomA);
+        add(roomB);
+        int rootA = root(indexOf(roomA));
+        int rootB = root(indexOf(roomB));
+        if (rootA == rootB) return;
+
+        if (rank[rootA] < rank[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        if (rank[rootA] == rank[rootB]) {
+            rank[rootA]++;
+        }
+        liveMembers[rootA] += liveMembers[rootB];
+        groupCount--;
+    }
+
+    /**
+     * 移除房间；其余成员仍保持连通
+     */
+    public synchronized void remove(int roomId) {
+        int index = indexOf(roomId);
+        if (index < 0) return;
+        mapRemove(roomId);
+        roomOf[index] = REMOVED;
+        int root = root(index);
+        if (--liveMembers[root] == 0) {
+            groupCount--;
+        }
+        liveCount--;
+
+        // 已移除的节点超过一半时重建，避免数组无限增长
+        if (nodeCount > 1024 && liveCount < nodeCount / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * 按当前的门户边重建一组房间的连通关系：这些房间先移出原来的群，再沿 neighbours 给出的边重新合并，
+     * 未知的邻居被忽略。rooms 应包含原来群中全部未移除的房间，否则群外的成员仍留在旧群中。
+     * rooms[0] 所在的新群沿用它原来的群ID，其余新群分配新的ID
+     */
+    public synchronized void rebuild(int[] rooms, IntFunction<int[]> neighbours) {
+        if (rooms.length == 0) return;
+        int keptGroupId = find(rooms[0]);
+        for (int roomId : rooms) {
+            remove(roomId);
+        }
+        for (int roomId : rooms) {
+            add(roomId);
+        }
+        for (int roomId : rooms) {
+            for (int near : neighbours.apply(roomId)) {
+                if (indexOf(near) >= 0) {
+                    union(roomId, near);
+                }
+            }
+        }
+        if (keptGroupId != -1) {
+            groupId[root(indexOf(rooms[0]))] = keptGroupId;
+        }
+    }
+
+    public synchronized int getRoomCount() {
+        return liveCount;
+    }
+
+    public synchronized int getGroupCount() {
+        return groupCount;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(mapKeys, EMPTY);
+        nodeCount = 0;
+        liveCount = 0;
+        groupCount = 0;
+    }
+
+    // 路径减半
+    private int root(int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    // 只保留未移除的房间，按原有分组重新建立并查集
+    private void compact() {
+        int oldCount = nodeCount;
+        int[] oldRoomOf = Arrays.copyOf(roomOf, oldCount);
+        int[] oldRoots = new int[oldCount];
+        int[] oldGroup = new int[oldCount];
+        for (int i = 0; i < oldCount; i++) {
+            oldRoots[i] = root(i);
+        }
+        for (int i = 0; i < oldCount; i++) {
+            oldGroup[i] = groupId[oldRoots[i]];
+        }
+
+        int savedNextGroupId = nextGroupId;
+        clear();
+        // 每个旧根对应的第一个新成员
+        int[] firstOfRoot = new int[oldCount];
+        Arrays.fill(firstOfRoot, EMPTY);
+        for (int i = 0; i < oldCount; i++) {
+            int roomId = oldRoomOf[i];
+            if (roomId == REMOVED) continue;
+            add(roomId);
+            int oldRoot = oldRoots[i];
+            if (firstOfRoot[oldRoot] == EMPTY) {
+                firstOfRoot[oldRoot] = roomId;
+            } else {
+                union(firstOfRoot[oldRoot], roomId);
+            }
+        }
+        // 保留原来的群ID，群ID不因重建而改变
+        for (int i = 0; i < oldCount; i++) {
+            int roomId = oldRoomOf[i];
+            if (roomId != REMOVED) {
+                groupId[root(indexOf(roomId))] = oldGroup[i];
+            }
+        }
+        nextGroupId = savedNextGroupId;
+    }
+
+    // === 房间ID -> 下标 ===
+
+    private int indexOf(int roomId) {
+        if (roomId == EMPTY) return -1;
+        int slot = mix(roomId) & mapMask;
+        int key;
+        while ((key = mapKeys[slot]) != EMPTY) {
+            if (key == roomId) return mapValues[slot];
+            slot = (slot + 1) & mapMask;
+        }
+        return -1;
+    }
+
+    private void mapPut(int roomId, int index) {
+        if ((liveCount + 1) * 2 > mapKeys.length) {
+            int[] oldKeys = mapKeys;
+            int[] oldValues = mapValues;
+            mapKeys = new int[oldKeys.length << 1];
+            mapValues = new int[oldKeys.length << 1];
+            mapMask = mapKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        insert(roomId, index);
+    }
+
+    private void insert(int roomId, int index) {
+        int slot = mix(roomId) & mapMask;
+        while (mapKeys[slot] != EMPTY) {
+            slot = (slot + 1) & mapMask;
+        }
+        mapKeys[slot] = roomId;
+        mapValues[slot] = index;
+    }
+
+    // 线性探测的后移删除，不留墓碑
+    private void mapRemove(int roomId) {
+        int slot = mix(roomId) & mapMask;
+        while (mapKeys[slot] != roomId) {
+            slot = (slot + 1) & mapMask;
+        }
+        int hole = slot;
+        int next = (hole + 1) & mapMask;
+        while (mapKeys[next] != EMPTY) {
+            int ideal = mix(mapKeys[next]) & mapMask;
+            // 若 ideal 不在 (hole, next] 之间，该元素可以前移填补空洞
+            boolean movable = hole <= next ? (ideal <= hole || ideal > next) : (ideal <= hole && ideal > next);
+            if (movable) {
+                mapKeys[hole] = mapKeys[next];
+                mapValues[hole] = mapValues[next];
+                hole = next;
+            }
+            next = (next + 1) & mapMask;
+        }
+        mapKeys[hole] = EMPTY;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
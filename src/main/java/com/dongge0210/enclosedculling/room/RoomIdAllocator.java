@@ -0,0 +1,40 @@
+package com.dongge0210.enclosedculling.room;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑的房间ID分配器 - 从 1 开始递增，失效房间的ID放回空闲栈优先复用，
+ * 分配和回收都是 O(1)，ID 保持在较小的范围内（便于调色板和并查集使用）
+ */
+final class RoomIdAllocator {
+    private int nextId = 1;
+    private int[] free = new int[64];
+    private int freeCount;
+
+    synchronized int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        return nextId++;
+    }
+
+    synchronized void release(int id) {
+        if (id <= 0 || id >= nextId) return;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount << 1);
+        }
+        free[freeCount++] = id;
+    }
+
+    /**
+     * @return 当前使用中的ID数
+     */
+    synchronized int getLiveCount() {
+        return nextId - 1 - freeCount;
+    }
+
+    synchronized void clear() {
+        nextId = 1;
+        freeCount = 0;
+    }
+}
@@ -0,0 +1,250 @@
+package com.dongge0210.enclosedculling.room;
+
+import com.dongge0210.enclosedculling.culling.PassabilityCache;
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 房间元数据 - 在登记时一次算好，统计和查询不再需要遍历房间的方块
+ *
+ * 包含方块数、包围盒、房间占用的区段（高亮和失效只访问这些区段）以及"门户"数：
+ * 门户指本房间方块与相邻房间方块共享的面，按相邻房间分别计数，相邻房间失效时扣除。
+ * 包围盒和区段列表在登记后不变；方块被之后登记的房间覆盖时只减少方块数，包围盒保持为保守的上界
+ */
+public final class RoomInfo {
+    private final int id;
+    private final ResourceKey<Level> dimension;
+    private final long start;
+    private final long anchorCell;
+    private final long[] sections;
+    private final long[] stampSections;
+    private final long[] stamps;
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+    private int voxelCount;
+    private final Map<Integer, Integer> portalFaces = new HashMap<>();
+    private int portalCount;
+
+    private RoomInfo(int id, ResourceKey<Level> dimension, long start, long[] sections, long[] stampSections, long[] stamps, int voxelCount,
+                     int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.id = id;
+        this.dimension = dimension;
+        this.start = start;
+        this.anchorCell = RoomSectionStorage.cellKey(BlockPos.of(start));
+        this.sections = sections;
+        this.stampSections = stampSections;
+        this.stamps = stamps;
+        this.voxelCount = voxelCount;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * 由检测结果建立元数据；方块数从 0 开始，由调用方在写入每个方块时累加
+     * @param existing 房间ID沿用已登记房间时传入原来的元数据，包围盒、区段和门户会被合并
+     */
+    static RoomInfo of(int id, RoomDetectionTask task, RoomInfo existing) {
+        int count = task.getMemberCount();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        KeyList sections = new KeyList();
+        KeyList stampSections = new KeyList();
+        if (existing != null) {
+            minX = existing.minX;
+            minY = existing.minY;
+            minZ = existing.minZ;
+            maxX = existing.maxX;
+            maxY = existing.maxY;
+            maxZ = existing.maxZ;
+            for (long key : existing.sections) sections.add(key);
+            for (long key : existing.stampSections) stampSections.add(key);
+        }
+        int inheritedStamps = stampSections.size;
+        for (int i = 0; i < count; i++) {
+            long p = task.getMember(i);
+            int x = BlockPos.getX(p), y = BlockPos.getY(p), z = BlockPos.getZ(p);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+            long sectionKey = sectionKey(x, y, z);
+            sections.add(sectionKey);
+            stampSections.add(sectionKey);
+            // 边界方块可能落在相邻区段，这些区段的变化同样会改变泛洪结果
+            for (Direction dir : Direction.values()) {
+                stampSections.add(sectionKey(x + dir.getStepX(), y + dir.getStepY(), z + dir.getStepZ()));
+            }
+        }
+        // 登记时记录房间及其边界所在区段的 ROOM 层指纹，恢复时据此判断泛洪结果是否仍然成立
+        long[] stampKeys = stampSections.toArray();
+        long[] stamps = new long[stampKeys.length];
+        if (existing != null) {
+            System.arraycopy(existing.stamps, 0, stamps, 0, inheritedStamps);
+        }
+        PassabilityCache cache = PassabilityCache.forLevel(task.level);
+        for (int i = inheritedStamps; i < stampKeys.length; i++) {
+            long key = stampKeys[i];
+            stamps[i] = cache.getLayerStamp(SectionPos.x(key), SectionPos.y(key), SectionPos.z(key), PassabilityCache.Layer.ROOM);
+        }
+        long start = existing != null ? existing.start : task.start.asLong();
+        RoomInfo info = new RoomInfo(id, task.level.dimension(), start, sections.toArray(), stampKeys, stamps,
+            existing != null ? existing.getVoxelCount() : 0, minX, minY, minZ, maxX, maxY, maxZ);
+        if (existing != null) {
+            synchronized (existing) {
+                info.portalFaces.putAll(existing.portalFaces);
+                info.portalCount = existing.portalCount;
+            }
+        }
+        return info;
+    }
+
+    private static long sectionKey(int x, int y, int z) {
+        return SectionPos.asLong(SectionPos.blockToSectionCoord(x),
+            SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z));
+    }
+
+    // 去重并保持插入顺序的区段键列表
+    private static final class KeyList {
+        private final LongHashSet seen = new LongHashSet(64);
+        private long[] keys = new long[16];
+        private int size;
+
+        void add(long key) {
+            if (!seen.add(key)) return;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size << 1);
+            }
+            keys[size++] = key;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(keys, size);
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public ResourceKey<Level> getDimension() {
+        return dimension;
+    }
+
+    /**
+     * 房间检测的起点（BlockPos.asLong）
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * 房间起点所在的网格（RoomSectionStorage.cellKey）
+     */
+    long getAnchorCell() {
+        return anchorCell;
+    }
+
+    public synchronized int getVoxelCount() {
+        return voxelCount;
+    }
+
+    synchronized void addVoxel() {
+        voxelCount++;
+    }
+
+    /**
+     * 方块被其他房间覆盖时调用
+     */
+    synchronized void removeVoxel() {
+        voxelCount--;
+    }
+
+    public int getMinX() { return minX; }
+    public int getMinY() { return minY; }
+    public int getMinZ() { return minZ; }
+    public int getMaxX() { return maxX; }
+    public int getMaxY() { return maxY; }
+    public int getMaxZ() { return maxZ; }
+
+    /**
+     * 位置是否在房间的包围盒内（不代表属于该房间）
+     */
+    public boolean boundsContain(BlockPos pos) {
+        return pos.getX() >= minX && pos.getX() <= maxX
+            && pos.getY() >= minY && pos.getY() <= maxY
+            && pos.getZ() >= minZ && pos.getZ() <= maxZ;
+    }
+
+    /**
+     * 房间占用的区段（SectionPos.asLong），调用方不得修改
+     */
+    long[] getSections() {
+        return sections;
+    }
+
+    /**
+     * 参与校验的区段：房间占用的区段及其边界方块所在的区段，调用方不得修改
+     */
+    long[] getStampSections() {
+        return stampSections;
+    }
+
+    /**
+     * 与 getStampSections 一一对应的 ROOM 层指纹（PassabilityCache.getLayerStamp），调用方不得修改
+     */
+    long[] getStamps() {
+        return stamps;
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    public synchronized int getPortalCount() {
+        return portalCount;
+    }
+
+    public synchronized int getNeighbourCount() {
+        return portalFaces.size();
+    }
+
+    synchronized void addPortals(int neighbourId, int faces) {
+        portalFaces.merge(neighbourId, faces, Integer::sum);
+        portalCount += faces;
+    }
+
+    synchronized void removePortals(int neighbourId) {
+        Integer faces = portalFaces.remove(neighbourId);
+        if (faces != null) {
+            portalCount -= faces;
+        }
+    }
+
+    synchronized int[] getNeighbourIds() {
+        int[] ids = new int[portalFaces.size()];
+        int i = 0;
+        for (int neighbour : portalFaces.keySet()) {
+            ids[i++] = neighbour;
+        }
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("房间 %d: %d 方块, %d 区段, 门户 %d, 范围 [%d,%d,%d]-[%d,%d,%d]",
+            id, getVoxelCount(), sections.length, getPortalCount(), minX, minY, minZ, maxX, maxY, maxZ);
+    }
+}
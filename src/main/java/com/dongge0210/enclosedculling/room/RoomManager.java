@@ -2,39 +2,58 @@ package com.dongge0210.enclosedculling.room;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Properties;
-import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.dongge0210.enclosedculling.culling.CacheInvalidationBus;
+import com.dongge0210.enclosedculling.culling.PassabilityCache;
+import com.dongge0210.enclosedculling.culling.TransparencyTable;
+import com.dongge0210.enclosedculling.culling.VoxelRaycast;
+import com.dongge0210.enclosedculling.culling.WorkBudget;
+
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.particles.ParticleTypes;
+import net.minecraft.core.SectionPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.registries.ForgeRegistries;
 
 public class RoomManager {
-    // --- 房间与连通群 ---
-    private static final Map<BlockPos, Integer> posToRoomID = new ConcurrentHashMap<>();
-    private static final Map<Integer, Integer> roomIdToGroupId = new ConcurrentHashMap<>();
-    private static final Map<Integer, Set<Integer>> groupIdToRoomIds = new ConcurrentHashMap<>();
-    private static final Map<UUID, Integer> playerGroupCache = new ConcurrentHashMap<>();
-    private static final Map<Integer, Set<UUID>> groupIdToPlayers = new ConcurrentHashMap<>();
-
-    // --- 区块缓存 ---
-    private static final Map<Long, Map<UUID, Boolean>> chunkVisibilityCache = new ConcurrentHashMap<>();
-    private static final Map<Long, Long> chunkCacheTick = new ConcurrentHashMap<>();
-    private static final int CACHE_VALID_TICKS = 60;
+    // 每个世界一份房间状态（客户端与服务端世界各自独立），世界卸载时移除
+    private static final Map<Level, LevelRooms> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * 获取指定世界的房间状态
+     */
+    static LevelRooms forLevel(Level level) {
+        return INSTANCES.computeIfAbsent(level, LevelRooms::new);
+    }
+
+    /**
+     * 获取指定世界最近一次发布的房间快照，任何线程都可以读取
+     */
+    public static RoomSnapshot getSnapshot(Level level) {
+        return forLevel(level).snapshot();
+    }
+
+    /**
+     * 发布客户端或服务端世界的房间快照，由 RoomDetectionScheduler 在每tick结束时调用
+     */
+    public static void publishSnapshots(boolean clientSide) {
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            if (levelRooms.level.isClientSide() == clientSide) {
+                levelRooms.publish();
+            }
+        }
+    }
 
     // --- 插件化策略（可插拔） ---
     public interface BlockTransparencyJudge {
@@ -52,17 +71,22 @@ public class RoomManager {
             prop.load(in);
             configDoorBlocks = Set.of(prop.getProperty("door", "minecraft:glass,minecraft:oak_door,minecraft:air").split(","));
         }
+        TransparencyTable.markDirty();
     }
     public static void setTransparencyJudge(BlockTransparencyJudge judge) {
         transparencyJudge = judge;
+        TransparencyTable.markDirty();
+    }
+    public static BlockTransparencyJudge getTransparencyJudge() {
+        return transparencyJudge;
     }
 
     // --- 主入口 ---
     public static void updatePlayerRoom(Level level, UUID playerId, BlockPos playerPos) {
-        int roomId = findOrCreateRoom(level, playerPos);
-        int groupId = roomIdToGroupId.getOrDefault(roomId, roomId);
-        playerGroupCache.put(playerId, groupId);
-        groupIdToPlayers.computeIfAbsent(groupId, k -> ConcurrentHashMap.newKeySet()).add(playerId);
+        LevelRooms levelRooms = forLevel(level);
+        Integer roomId = levelRooms.findRoomOrSchedule(playerPos);
+        if (roomId == null) return; // 房间检测尚未完成，沿用之前的房间
+        levelRooms.setPlayerRoom(playerId, roomId);
     }
 
     // 添加日志频率控制
@@ -85,33 +109,27 @@ public class RoomManager {
                 visible = !scriptResult;
                 reason = scriptResult ? "script_culled" : "script_visible";
             } else {
-                // 改进的房间连通性检测
-                int roomIdTarget = findOrCreateRoom(level, target);
-                int groupIdTarget = roomIdToGroupId.getOrDefault(roomIdTarget, roomIdTarget);
-                int groupIdPlayer = playerGroupCache.getOrDefault(playerId, -1);
+                // 改进的房间连通性检测；房间检测尚未完成时按可见处理，不阻塞当前tick
+                // 连通群和玩家所在房间取自本tick的快照，同一tick内的判断保持一致
+                LevelRooms levelRooms = forLevel(level);
+                RoomSnapshot snapshot = levelRooms.snapshot();
+                Integer roomIdTarget = levelRooms.findRoomOrSchedule(target);
+                int groupIdTarget = roomIdTarget != null ? snapshot.getGroup(roomIdTarget) : -1;
+                Integer playerRoomId = snapshot.getPlayerRoom(playerId);
+                int groupIdPlayer = playerRoomId != null ? snapshot.getGroup(playerRoomId) : -1;
                 
-                if (groupIdTarget != groupIdPlayer) {
+                if (groupIdTarget == -1) {
+                    visible = true;
+                    reason = "room_pending";
+                } else if (groupIdTarget != groupIdPlayer) {
                     // 优化门连接检查
                     boolean connectedByDoor = areRoomsConnectedByDoor(level, playerPos, target);
                     visible = connectedByDoor;
                     reason = connectedByDoor ? "door_connected" : "different_group";
                 } else {
-                    // 使用缓存的视线检查结果
-                    long chunkKey = chunkPosLong(target);
-                    long nowTick = level.getGameTime();
-                    Map<UUID, Boolean> chunkCache = chunkVisibilityCache.computeIfAbsent(chunkKey, k -> new ConcurrentHashMap<>());
-                    long lastTick = chunkCacheTick.getOrDefault(chunkKey, 0L);
-                    Boolean cached = chunkCache.get(playerId);
-                    
-                    if (cached != null && (nowTick - lastTick) < CACHE_VALID_TICKS) {
-                        visible = cached;
-                        reason = "cached_result";
-                    } else {
-                        visible = hasLineOfSight(level, playerPos, target);
-                        chunkCache.put(playerId, visible);
-                        chunkCacheTick.put(chunkKey, nowTick);
-                        reason = visible ? "line_of_sight" : "no_line_of_sight";
-                    }
+                    // 区段对视线缓存，同一区段的玩家共用结果
+                    visible = levelRooms.isSectionVisible(playerPos, target);
+                    reason = visible ? "line_of_sight" : "no_line_of_sight";
                 }
             }
             
@@ -138,8 +156,33 @@ public class RoomManager {
         
         return visible;
     }
+    /**
+     * 每tick大量调用的可见性判断（实体、方块实体tick）：查出目标所在房间，
+     * 再测试本tick快照中该玩家的可见房间位图，不做视线检测，也不调用脚本钩子
+     * 房间检测尚未完成时按可见处理
+     */
+    public static boolean isVisibleToPlayer(Level level, BlockPos target, Player player) {
+        LevelRooms levelRooms = forLevel(level);
+        Integer roomId = levelRooms.findRoomOrSchedule(target);
+        return roomId == null || levelRooms.snapshot().isRoomVisibleTo(player.getUUID(), roomId);
+    }
+    /**
+     * @return 目标所在的房间ID，房间对玩家可见或尚未检测完成时为 RoomSection.NO_ROOM
+     */
+    static int getOccludedRoom(Level level, BlockPos target, Player player) {
+        LevelRooms levelRooms = forLevel(level);
+        Integer roomId = levelRooms.findRoomOrSchedule(target);
+        if (roomId == null || levelRooms.snapshot().isRoomVisibleTo(player.getUUID(), roomId)) {
+            return RoomSection.NO_ROOM;
+        }
+        return roomId;
+    }
+    /**
+     * 玩家位置到目标的可见性判断，经过区段对视线缓存：同一区段的玩家共用可见结果，
+     * 返回 false 时玩家自己的视线一定被阻挡
+     */
     public static boolean isPositionVisible(Level level, BlockPos target, BlockPos playerPos) {
-        return hasLineOfSight(level, playerPos, target);
+        return forLevel(level).isSectionVisible(playerPos, target);
     }
 
     /**
@@ -165,113 +208,25 @@ public class RoomManager {
         }
     }
 
-    // --- 房间算法 ---
-    private static int findOrCreateRoom(Level level, BlockPos pos) {
-        if (posToRoomID.containsKey(pos)) {
-            return posToRoomID.get(pos);
-        }
-        
-        // 使用稳定的分区哈希算法生成房间ID
-        // 将坐标按网格划分，确保相邻位置倾向于得到相同的基础ID
-        int gridX = Math.floorDiv(pos.getX(), 16); // 16x16网格
-        int gridY = Math.floorDiv(pos.getY(), 8);  // 8高度层
-        int gridZ = Math.floorDiv(pos.getZ(), 16);
-        String dimKey = level.dimension().toString();
-        
-        // 生成稳定的基础ID
-        int baseRoomId = Objects.hash(gridX, gridY, gridZ, dimKey);
-        
-        // 确保ID为正数
-        if (baseRoomId < 0) baseRoomId = -baseRoomId;
-        if (baseRoomId == 0) baseRoomId = 1;
-        
-        int roomId = baseRoomId;
-        
-        // 如果这个房间ID已经存在，检查是否真的是同一个房间区域
-        if (roomIdToGroupId.containsKey(roomId)) {
-            boolean foundExistingRoom = false;
-            // 检查是否在同一个网格区域内
-            for (Map.Entry<BlockPos, Integer> entry : posToRoomID.entrySet()) {
-                if (entry.getValue().equals(roomId)) {
-                    BlockPos existingPos = entry.getKey();
-                    int existingGridX = Math.floorDiv(existingPos.getX(), 16);
-                    int existingGridY = Math.floorDiv(existingPos.getY(), 8);
-                    int existingGridZ = Math.floorDiv(existingPos.getZ(), 16);
-                    
-                    // 如果在相同网格内，认为是同一房间
-                    if (existingGridX == gridX && existingGridY == gridY && existingGridZ == gridZ) {
-                        foundExistingRoom = true;
-                        break;
-                    }
-                }
-            }
-            
-            if (!foundExistingRoom) {
-                // 使用确定性的方式生成新ID，避免随机性
-                roomId = Objects.hash(baseRoomId, pos.getX(), pos.getZ());
-                if (roomId < 0) roomId = -roomId;
-                if (roomId == 0) roomId = baseRoomId + 1;
-                
-                // 如果还有冲突，继续增量查找
-                int increment = 1;
-                while (roomIdToGroupId.containsKey(roomId) && increment < 1000) {
-                    roomId = baseRoomId + increment;
-                    increment++;
-                }
-            }
-        }
-        
-        Set<BlockPos> roomBlocks = new HashSet<>();
-        Queue<BlockPos> queue = new ArrayDeque<>();
-        queue.add(pos);
-        roomBlocks.add(pos);
-
-        final int MAX_ROOM_SIZE = 4096;
-        while (!queue.isEmpty() && roomBlocks.size() < MAX_ROOM_SIZE) {
-            BlockPos curr = queue.poll();
-            for (BlockPos dir : getCardinalDirections()) {
-                BlockPos next = curr.offset(dir.getX(), dir.getY(), dir.getZ());
-                if (roomBlocks.contains(next)) continue;
-                BlockState state = level.getBlockState(next);
-                if (transparencyJudge.isRoomTransparent(state)) {
-                    queue.add(next);
-                    roomBlocks.add(next);
-                }
-            }
-        }
-        for (BlockPos p : roomBlocks) {
-            posToRoomID.put(p, roomId);
-        }
-        Set<Integer> neighbourRooms = new HashSet<>();
-        for (BlockPos p : roomBlocks) {
-            for (BlockPos dir : getCardinalDirections()) {
-                BlockPos adj = p.offset(dir.getX(), dir.getY(), dir.getZ());
-                if (posToRoomID.containsKey(adj)) {
-                    int nearRoom = posToRoomID.get(adj);
-                    if (nearRoom != roomId) neighbourRooms.add(nearRoom);
-                }
-            }
-        }
-        int groupId = roomId;
-        for (int near : neighbourRooms) {
-            int nearGroup = roomIdToGroupId.getOrDefault(near, near);
-            groupId = Math.min(groupId, nearGroup);
+    // --- 房间检测 ---
+
+    /**
+     * 在预算内推进排队中的房间检测，由 RoomDetectionScheduler 每tick调用
+     * @param clientSide 只处理客户端或服务端世界的任务，保证任务只在所属世界的线程上推进
+     */
+    public static void processPendingRooms(boolean clientSide, WorkBudget budget) {
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            if (levelRooms.level.isClientSide() != clientSide) continue;
+            if (!levelRooms.processPending(budget)) return;
         }
-        roomIdToGroupId.put(roomId, groupId);
-        groupIdToRoomIds.computeIfAbsent(groupId, k -> ConcurrentHashMap.newKeySet()).add(roomId);
-        for (int near : neighbourRooms) {
-            int oldGroup = roomIdToGroupId.getOrDefault(near, near);
-            if (oldGroup != groupId) {
-                if (groupIdToRoomIds.containsKey(oldGroup)) {
-                    groupIdToRoomIds.get(groupId).addAll(groupIdToRoomIds.get(oldGroup));
-                    groupIdToRoomIds.remove(oldGroup);
-                }
-                for (int r : groupIdToRoomIds.getOrDefault(groupId, new HashSet<>())) {
-                    roomIdToGroupId.put(r, groupId);
-                }
-            }
+    }
+
+    public static int getPendingRoomTaskCount() {
+        int count = 0;
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            count += levelRooms.getPendingCount();
         }
-        return roomId;
+        return count;
     }
 
     private static boolean defaultJudge(BlockState state) {
@@ -296,103 +251,35 @@ public class RoomManager {
         return configDoorBlocks.contains(id) || state.isAir() || !state.canOcclude();
     }
 
-    private static List<BlockPos> getCardinalDirections() {
-        return List.of(
-                new BlockPos(1, 0, 0), new BlockPos(-1, 0, 0),
-                new BlockPos(0, 1, 0), new BlockPos(0, -1, 0),
-                new BlockPos(0, 0, 1), new BlockPos(0, 0, -1)
-        );
-    }
-
     // --- 视线判定 ---
     public static boolean hasLineOfSight(Level level, BlockPos from, BlockPos to) {
-        for (BlockPos pos : bresenham3D(from, to)) {
-            if (!isTransparent(level.getBlockState(pos))) {
-                return false;
-            }
-        }
-        return true;
-    }
-    public static List<BlockPos> bresenham3D(BlockPos from, BlockPos to) {
-        List<BlockPos> result = new ArrayList<>();
-        int x1 = from.getX(), y1 = from.getY(), z1 = from.getZ();
-        int x2 = to.getX(), y2 = to.getY(), z2 = to.getZ();
-
-        int dx = Math.abs(x2 - x1), dy = Math.abs(y2 - y1), dz = Math.abs(z2 - z1);
-        int xs = x2 > x1 ? 1 : -1;
-        int ys = y2 > y1 ? 1 : -1;
-        int zs = z2 > z1 ? 1 : -1;
-
-        int px = x1, py = y1, pz = z1;
-        int dx2 = dx << 1, dy2 = dy << 1, dz2 = dz << 1;
-        int err1, err2;
-        if (dx >= dy && dx >= dz) {
-            err1 = dy2 - dx;
-            err2 = dz2 - dx;
-            for (int i = 0; i < dx; i++) {
-                result.add(new BlockPos(px, py, pz));
-                if (err1 > 0) { py += ys; err1 -= dx2; }
-                if (err2 > 0) { pz += zs; err2 -= dx2; }
-                err1 += dy2;
-                err2 += dz2;
-                px += xs;
-            }
-        } else if (dy >= dx && dy >= dz) {
-            err1 = dx2 - dy;
-            err2 = dz2 - dy;
-            for (int i = 0; i < dy; i++) {
-                result.add(new BlockPos(px, py, pz));
-                if (err1 > 0) { px += xs; err1 -= dy2; }
-                if (err2 > 0) { pz += zs; err2 -= dy2; }
-                err1 += dx2;
-                err2 += dz2;
-                py += ys;
-            }
-        } else {
-            err1 = dy2 - dz;
-            err2 = dx2 - dz;
-            for (int i = 0; i < dz; i++) {
-                result.add(new BlockPos(px, py, pz));
-                if (err1 > 0) { py += ys; err1 -= dz2; }
-                if (err2 > 0) { px += xs; err2 -= dz2; }
-                err1 += dy2;
-                err2 += dx2;
-                pz += zs;
-            }
-        }
-        result.add(new BlockPos(x2, y2, z2));
-        return result;
+        return VoxelRaycast.isClear(PassabilityCache.forLevel(level), PassabilityCache.Layer.ROOM, from, to);
     }
     public static boolean isTransparent(BlockState state) {
-        return transparencyJudge.isRoomTransparent(state);
-    }
-
-    private static long chunkPosLong(BlockPos pos) {
-        return (((long)pos.getX() >> 4) & 0xFFFFFFFFL) | ((((long)pos.getZ() >> 4) & 0xFFFFFFFFL) << 32);
+        return TransparencyTable.test(state, TransparencyTable.ROOM);
     }
 
     // --- 开发/调试辅助接口 ---
     public static int getRoomIdForPos(Level level, BlockPos pos) {
-        return posToRoomID.getOrDefault(pos, -1);
+        int roomId = forLevel(level).getRoomId(pos);
+        return roomId != RoomSection.NO_ROOM ? roomId : -1;
     }
-    public static int getGroupIdForRoom(int roomId) {
-        return roomIdToGroupId.getOrDefault(roomId, -1);
+    public static int getGroupIdForRoom(Level level, int roomId) {
+        return forLevel(level).findGroup(roomId);
     }
-    public static int getRoomSize(int roomId) {
-        int count = 0;
-        for (int v : posToRoomID.values()) if (v == roomId) count++;
-        return count;
+    public static int getRoomSize(Level level, int roomId) {
+        RoomInfo info = forLevel(level).getRoomInfo(roomId);
+        return info != null ? info.getVoxelCount() : 0;
     }
-    // 在世界里给指定房间高亮（粒子特效）
+    /**
+     * 获取房间元数据，未登记的房间返回 null
+     */
+    public static RoomInfo getRoomInfo(Level level, int roomId) {
+        return forLevel(level).getRoomInfo(roomId);
+    }
+    // 在世界里给指定房间高亮（粒子特效），只访问房间自己的区段
     public static void debugHighlightRoom(Level level, int roomId, ServerPlayer player) {
-        if (!(level instanceof ServerLevel serverLevel)) return;
-        for (Map.Entry<BlockPos, Integer> e : posToRoomID.entrySet()) {
-            if (e.getValue() == roomId) {
-                serverLevel.sendParticles(player, ParticleTypes.END_ROD, true,
-                        e.getKey().getX() + 0.5, e.getKey().getY() + 0.5, e.getKey().getZ() + 0.5,
-                        1, 0, 0, 0, 0.01);
-            }
-        }
+        forLevel(level).debugHighlightRoom(roomId, player);
     }
     
     /**
@@ -400,19 +287,42 @@ public class RoomManager {
      */
     public static Integer getRoomIdAt(Level level, BlockPos pos) {
         try {
-            return findOrCreateRoom(level, pos);
+            return forLevel(level).findOrCreateRoom(pos);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 获取指定位置的房间ID，尚未检测时排队检测并返回 null（不同步泛洪，可每帧调用）
+     */
+    public static Integer findRoomAt(Level level, BlockPos pos) {
+        try {
+            return forLevel(level).findRoomOrSchedule(pos);
         } catch (Exception e) {
             return null;
         }
     }
     
+    /**
+     * 获取指定位置的房间组ID，尚未检测时排队检测并返回 null（不同步泛洪，可每帧调用）
+     */
+    public static Integer findGroupAt(Level level, BlockPos pos) {
+        Integer roomId = findRoomAt(level, pos);
+        if (roomId == null) return null;
+        int groupId = forLevel(level).findGroup(roomId);
+        return groupId != -1 ? groupId : roomId;
+    }
+    
     /**
      * 获取指定位置的房间组ID
      */
     public static Integer getGroupIdAt(Level level, BlockPos pos) {
         try {
-            int roomId = findOrCreateRoom(level, pos);
-            return roomIdToGroupId.getOrDefault(roomId, roomId);
+            LevelRooms levelRooms = forLevel(level);
+            int roomId = levelRooms.findOrCreateRoom(pos);
+            int groupId = levelRooms.findGroup(roomId);
+            return groupId != -1 ? groupId : roomId;
         } catch (Exception e) {
             return null;
         }
@@ -420,151 +330,263 @@ public class RoomManager {
     
     // 简单统计接口
     public static String getRoomStats() {
-        int roomCount = new HashSet<>(posToRoomID.values()).size();
-        int groupCount = new HashSet<>(roomIdToGroupId.values()).size();
-        int totalPositions = posToRoomID.size();
-        int cacheSize = chunkVisibilityCache.size();
+        int roomCount = 0;
+        int groupCount = 0;
+        long totalPositions = 0;
+        int sectionCount = 0;
+        long storageBytes = 0;
+        int cacheSize = 0;
+        // 每个世界一项
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            RoomSnapshot snapshot = levelRooms.snapshot();
+            roomCount += snapshot.getRoomCount();
+            groupCount += snapshot.getGroupCount();
+            totalPositions += levelRooms.getTotalVoxels();
+            sectionCount += levelRooms.getSectionCount();
+            storageBytes += levelRooms.estimateStorageBytes();
+            cacheSize += levelRooms.getSightCacheSize();
+        }
         
-        return String.format("房间总数: %d\n连通群数: %d\n已分析位置: %d\n缓存区块: %d", 
-                roomCount, groupCount, totalPositions, cacheSize);
+        return String.format("房间总数: %d\n连通群数: %d\n已分析位置: %d\n房间区段: %d (约 %d KB)\n视线缓存: %d\n排队检测: %d\n房间世界: %d\n休眠方块实体: %d\n卸载释放: %s", 
+                roomCount, groupCount, totalPositions, sectionCount, storageBytes / 1024, cacheSize, getPendingRoomTaskCount(),
+                INSTANCES.size(), DormantBlockEntities.getDormantCount(), CacheInvalidationBus.getEvictionSummary()) + "\n" + RoomPersistence.getStats();
     }
     
     /**
-     * 获取区块缓存大小
+     * 获取视线缓存的区段对数量
      */
-    public static int getChunkCacheSize() {
-        return chunkVisibilityCache.size();
+    public static int getSightCacheSize() {
+        int size = 0;
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            size += levelRooms.getSightCacheSize();
+        }
+        return size;
     }
     
     /**
      * 获取详细的缓存统计信息
      */
     public static String getCacheStats() {
-        int totalCachedEntries = chunkVisibilityCache.values().stream()
-            .mapToInt(Map::size)
-            .sum();
+        int occluded = 0;
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            occluded += levelRooms.getSightCacheOccludedCount();
+        }
             
-        return String.format("区块缓存: %d个区块, %d个缓存条目", 
-            chunkVisibilityCache.size(), totalCachedEntries);
+        return String.format("视线缓存: %d个区段对, %d个遮挡", 
+            getSightCacheSize(), occluded);
+    }
+
+    // --- 按方块变化失效 ---
+    static {
+        CacheInvalidationBus.register(new CacheInvalidationBus.Listener() {
+            @Override
+            public void onBlockChanged(Level level, BlockPos pos, long sectionKey) {
+                invalidateAround(level, pos);
+            }
+
+            @Override
+            public void onChunkReloaded(Level level, int chunkX, int chunkZ) {
+                invalidateChunk(level, chunkX, chunkZ);
+            }
+
+            @Override
+            public void onChunkUnloaded(Level level, int chunkX, int chunkZ) {
+                evictChunk(level, chunkX, chunkZ);
+            }
+
+            @Override
+            public void onLevelUnloaded(Level level) {
+                onLevelUnload(level);
+            }
+        });
+    }
+
+    /**
+     * 方块变化后失效受影响的房间、覆盖该位置的排队检测以及相关的视线缓存
+     * 世界还没有房间状态时不做任何事
+     */
+    public static void invalidateAround(Level level, BlockPos pos) {
+        LevelRooms levelRooms = INSTANCES.get(level);
+        if (levelRooms != null) {
+            levelRooms.invalidateAround(pos);
+        }
+    }
+
+    /**
+     * 区块数据被替换后失效经过该区块列的房间和与该列相交的视线缓存
+     */
+    public static void invalidateChunk(Level level, int chunkX, int chunkZ) {
+        LevelRooms levelRooms = INSTANCES.get(level);
+        if (levelRooms != null) {
+            levelRooms.dropChunk(chunkX, chunkZ);
+        }
+    }
+
+    /**
+     * 区块卸载后释放经过该区块列的房间、起点在该列的排队检测以及与该列相交的视线缓存
+     */
+    public static void evictChunk(Level level, int chunkX, int chunkZ) {
+        LevelRooms levelRooms = INSTANCES.get(level);
+        if (levelRooms == null) {
+            if (level instanceof ServerLevel serverLevel) {
+                // 仍需维护持久化区域的已加载区块计数
+                RoomPersistence.onChunkEvicted(serverLevel, chunkX, chunkZ, List.of(), start -> false);
+            }
+            return;
+        }
+        int[] dropped = levelRooms.evictChunk(chunkX, chunkZ);
+        CacheInvalidationBus.recordEvicted("rooms", dropped[0]);
+        CacheInvalidationBus.recordEvicted("section_sight", dropped[1]);
     }
 
     // --- 缓存清理 ---
+    // 客户端世界的房间状态只能在客户端线程上修改，由 clearAll 置位、applyClientClear 消费
+    private static volatile boolean clientClearRequested;
+
+    /**
+     * 清理所有世界的房间状态，在服务端线程调用：服务端世界立即清理，
+     * 客户端世界在下一个客户端tick由 applyClientClear 清理
+     */
     public static void clearAll() {
-        posToRoomID.clear();
-        roomIdToGroupId.clear();
-        groupIdToRoomIds.clear();
-        playerGroupCache.clear();
-        groupIdToPlayers.clear();
-        chunkVisibilityCache.clear();
-        chunkCacheTick.clear();
-    }
-    public static void clearChunkCache() {
-        chunkVisibilityCache.clear();
-        chunkCacheTick.clear();
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            if (!levelRooms.level.isClientSide()) {
+                levelRooms.clear();
+            }
+        }
+        clientClearRequested = true;
+        // 存档中的房间仍然有效（由区段指纹校验），重新排队恢复
+        RoomPersistence.reloadAll();
     }
-    
-    // --- 房间ID稳定性管理 ---
-    private static final Map<String, Integer> playerLastRoomId = new ConcurrentHashMap<>();
-    private static final Map<String, Long> lastRoomCheckTime = new ConcurrentHashMap<>();
-    private static final Map<String, BlockPos> playerLastPosition = new ConcurrentHashMap<>();
-    private static final long ROOM_CHECK_COOLDOWN = 3000; // 3秒冷却时间，减少频繁变化
-    
+
     /**
-     * 获取指定位置的房间ID（带稳定性检查）
+     * 在客户端线程上执行 clearAll 请求的客户端清理，由 RoomDetectionScheduler 每个客户端tick调用
      */
-    public static Integer getRoomIdAtStable(Level level, BlockPos pos, String playerId) {
-        String key = playerId + "_" + level.dimension().toString();
-        long currentTime = System.currentTimeMillis();
-        Long lastCheck = lastRoomCheckTime.get(key);
-        BlockPos lastPos = playerLastPosition.get(key);
-        
-        // 如果距离上次检查时间很短，或者玩家位置变化很小，返回缓存的房间ID
-        if (lastCheck != null && (currentTime - lastCheck) < ROOM_CHECK_COOLDOWN) {
-            Integer cachedId = playerLastRoomId.get(key);
-            if (cachedId != null) {
-                // 如果玩家位置变化很小（小于4格），直接返回缓存
-                if (lastPos != null && lastPos.distSqr(pos) < 16) {
-                    return cachedId;
-                }
-                
-                // 验证缓存的房间ID是否仍然有效
-                Integer currentId = posToRoomID.get(pos);
-                if (currentId != null && currentId.equals(cachedId)) {
-                    playerLastPosition.put(key, pos);
-                    return cachedId;
-                }
+    public static void applyClientClear() {
+        if (!clientClearRequested) return;
+        clientClearRequested = false;
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            if (levelRooms.level.isClientSide()) {
+                levelRooms.clear();
             }
         }
-        
-        // 获取新的房间ID
-        Integer roomId = getRoomIdAt(level, pos);
-        if (roomId != null) {
-            playerLastRoomId.put(key, roomId);
-            lastRoomCheckTime.put(key, currentTime);
-            playerLastPosition.put(key, pos);
+    }
+
+    // --- 持久化 ---
+
+    /**
+     * 把世界中存活的房间写回存档，由 RoomPersistence 在世界保存时调用
+     */
+    static void saveRooms(ServerLevel level) {
+        LevelRooms levelRooms = forLevel(level);
+        RoomPersistence.save(level, levelRooms.captureRooms(), start -> levelRooms.isRoomAt(BlockPos.of(start)));
+    }
+
+    /**
+     * 位置是否已属于某个存活的房间
+     */
+    static boolean isRoomAt(Level level, BlockPos pos) {
+        LevelRooms levelRooms = INSTANCES.get(level);
+        return levelRooms != null && levelRooms.isRoomAt(pos);
+    }
+
+    /**
+     * 登记从存档恢复的房间；起点已属于某个房间（本次运行中已重新检测）时跳过
+     */
+    static boolean restoreRoom(Level level, BlockPos start, long[] members) {
+        return forLevel(level).restoreRoom(start, members);
+    }
+
+    /**
+     * 世界卸载时写回并丢弃该世界的全部房间状态
+     */
+    public static void onLevelUnload(Level level) {
+        LevelRooms levelRooms = INSTANCES.remove(level);
+        if (level instanceof ServerLevel serverLevel) {
+            List<RoomPersistence.StoredRoom> live = levelRooms != null ? levelRooms.captureRooms() : List.of();
+            RoomPersistence.saveAndClose(serverLevel, live,
+                start -> levelRooms != null && levelRooms.isRoomAt(BlockPos.of(start)));
+        }
+        if (levelRooms != null) {
+            CacheInvalidationBus.recordEvicted("rooms", levelRooms.clear());
+        }
+    }
+
+    public static void clearSightCache() {
+        for (LevelRooms levelRooms : INSTANCES.values()) {
+            levelRooms.clearSightCache();
+        }
+    }
+    
+    /**
+     * 获取指定位置的房间ID（带稳定性检查），尚未检测时排队检测并返回 null
+     */
+    public static Integer getRoomIdAtStable(Level level, BlockPos pos, String playerId) {
+        try {
+            return forLevel(level).getRoomIdAtStable(pos, playerId);
+        } catch (Exception e) {
+            return null;
         }
-        
-        return roomId;
     }
     
     /**
      * 检查两个房间是否通过门连通
+     * 房间检测尚未完成时排队检测并按连通处理，不在调用线程上同步泛洪
      */
     public static boolean areRoomsConnectedByDoor(Level level, BlockPos pos1, BlockPos pos2) {
-        Integer room1 = getRoomIdAt(level, pos1);
-        Integer room2 = getRoomIdAt(level, pos2);
+        Integer room1 = findRoomAt(level, pos1);
+        Integer room2 = findRoomAt(level, pos2);
         
         if (room1 == null || room2 == null || room1.equals(room2)) {
             return true; // 同一个房间或无法判断，认为连通
         }
         
-        // 检查两个房间之间的路径
-        Vec3 start = pos1.getCenter();
-        Vec3 end = pos2.getCenter();
-        double distance = start.distanceTo(end);
-        
-        if (distance > 32.0) {
+        if (pos1.distSqr(pos2) > 32.0 * 32.0) {
             return false; // 距离太远，不考虑门连接
         }
         
-        Vec3 direction = end.subtract(start).normalize();
-        boolean foundDoor = false;
-        
-        // 沿路径检查是否有门
-        for (double d = 1.0; d < distance; d += 0.5) {
-            Vec3 checkPos = start.add(direction.scale(d));
-            BlockPos blockPos = BlockPos.containing(checkPos);
-            BlockState state = level.getBlockState(blockPos);
-            
-            String blockName = state.getBlock().getDescriptionId();
-            if (blockName.contains("door") || blockName.contains("gate") || 
-                blockName.contains("fence_gate") || blockName.contains("trapdoor")) {
-                
-                // 检查门是否开启
-                if (isDoorOpen(state)) {
-                    foundDoor = true;
-                    break;
-                }
-            }
-        }
-        
-        return foundDoor;
+        // 沿路径检查是否有开启的门类方块（门、栅栏门、活板门）
+        return pathHasOpenDoor(level, pos1, pos2);
     }
     
     /**
-     * 检查门是否开启
+     * 沿两个方块中心之间的射线逐个体素检查开启的门类方块
+     * 每个体素只访问一次；只在 PassabilityCache 标记为含有打开的门的区段中读取方块状态
      */
-    private static boolean isDoorOpen(BlockState state) {
-        // 检查门的开启状态
-        if (state.hasProperty(net.minecraft.world.level.block.state.properties.BlockStateProperties.OPEN)) {
-            return state.getValue(net.minecraft.world.level.block.state.properties.BlockStateProperties.OPEN);
-        }
-        // 对于栅栏门
-        if (state.hasProperty(net.minecraft.world.level.block.state.properties.BlockStateProperties.OPEN)) {
-            return state.getValue(net.minecraft.world.level.block.state.properties.BlockStateProperties.OPEN);
+    private static boolean pathHasOpenDoor(Level level, BlockPos from, BlockPos to) {
+        PassabilityCache cache = PassabilityCache.forLevel(level);
+        int x = from.getX(), y = from.getY(), z = from.getZ();
+        int dx = to.getX() - x, dy = to.getY() - y, dz = to.getZ() - z;
+        int stepX = Integer.signum(dx), stepY = Integer.signum(dy), stepZ = Integer.signum(dz);
+        // 起点在方块中心，到达第一个体素边界需要半个体素
+        double deltaX = dx != 0 ? 1.0 / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double deltaY = dy != 0 ? 1.0 / Math.abs(dy) : Double.POSITIVE_INFINITY;
+        double deltaZ = dz != 0 ? 1.0 / Math.abs(dz) : Double.POSITIVE_INFINITY;
+        double maxX = deltaX * 0.5, maxY = deltaY * 0.5, maxZ = deltaZ * 0.5;
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        long lastSection = Long.MIN_VALUE;
+        boolean sectionHasDoor = false;
+        for (int i = Math.abs(dx) + Math.abs(dy) + Math.abs(dz); i >= 0; i--) {
+            long section = SectionPos.asLong(x >> 4, y >> 4, z >> 4);
+            if (section != lastSection) {
+                lastSection = section;
+                sectionHasDoor = cache.hasOpenDoor(x >> 4, y >> 4, z >> 4);
+            }
+            if (sectionHasDoor && TransparencyTable.test(level.getBlockState(pos.set(x, y, z)), TransparencyTable.OPEN_DOOR)) {
+                return true;
+            }
+            if (maxX <= maxY && maxX <= maxZ) {
+                x += stepX;
+                maxX += deltaX;
+            } else if (maxY <= maxZ) {
+                y += stepY;
+                maxY += deltaY;
+            } else {
+                z += stepZ;
+                maxZ += deltaZ;
+            }
         }
-        // 默认认为是开启的（对于不确定的方块）
-        return true;
+        return false;
     }
     
     /**
@@ -585,11 +607,11 @@ public class RoomManager {
     }
     
     /**
-     * 获取两个房间之间的连通性状态
+     * 获取两个房间之间的连通性状态，房间检测尚未完成时为"未知"
      */
     public static String getRoomConnectivityStatus(Level level, BlockPos pos1, BlockPos pos2) {
-        Integer room1 = getRoomIdAt(level, pos1);
-        Integer room2 = getRoomIdAt(level, pos2);
+        Integer room1 = findRoomAt(level, pos1);
+        Integer room2 = findRoomAt(level, pos2);
         
         if (room1 == null || room2 == null) {
             return "未知";
@@ -599,4 +621,4 @@ public class RoomManager {
         }
         return areRoomsConnectedByDoor(level, pos1, pos2) ? "通过门连通" : "不连通";
     }
-}
\ No newline at end of file
+}
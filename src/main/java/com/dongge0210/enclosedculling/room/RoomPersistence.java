@@ -0,0 +1,474 @@
+package com.dongge0210.enclosedculling.room;
+
+import com.dongge0210.enclosedculling.EnclosedSpaceRenderCulling;
+import com.dongge0210.enclosedculling.culling.PassabilityCache;
+import com.dongge0210.enclosedculling.culling.WorkBudget;
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * 房间持久化 - 把服务端世界的房间保存到存档的维度目录（data/enclosedculling/rooms），
+ * 使用 RoomRegionFile（32x32 区块一个文件，内存映射），房间写入其检测起点所在区块的槽位
+ *
+ * 每个房间保存起点、占用区段的方块位图，以及房间和边界所在区段的 ROOM 层指纹。
+ * 区域文件在区域内第一个区块加载时打开，有数据的槽位标记为待恢复；房间在其全部相关区块都已加载后、
+ * 于服务端tick的 WorkBudget 内直接从映射内存解析并恢复：指纹与当前方块数据一致才重新登记，
+ * 否则从文件中删除，等待正常检测。连通群和门户由登记时的相邻扫描重建，因此不单独保存
+ *
+ * 映射只用于保存和恢复：恢复时在映射内存上校验并解析，不先复制到堆；房间一旦登记，
+ * 就和正常检测出的房间一样存放在堆上的 RoomSectionStorage 中，运行时的房间查询不读取映射。
+ * 持久化本身在堆上只保留打开的映射和每个区域的待恢复槽位位图；区块卸载导致房间被释放时立即写回所属槽位，
+ * 区域内的区块全部卸载后关闭文件。只在服务端线程上访问
+ */
+@Mod.EventBusSubscriber(modid = EnclosedSpaceRenderCulling.MODID)
+public class RoomPersistence {
+    private static final int VERSION = 2;
+    private static final int MASK_WORDS = RoomSection.VOLUME / 64;
+    // 房间记录：起点(8) + 成员区段数(2) + 指纹区段数(2)，成员区段：键(8) + 位图(512)，指纹区段：键(8) + 指纹(8)
+    private static final int ROOM_HEADER_BYTES = 12;
+    private static final int MEMBER_SECTION_BYTES = 8 + MASK_WORDS * 8;
+    private static final int STAMP_SECTION_BYTES = 16;
+
+    private static final Map<ServerLevel, LevelState> LEVELS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong restoredRooms = new AtomicLong();
+    private static final AtomicLong rejectedRooms = new AtomicLong();
+
+    /**
+     * 待写入的房间：起点、占用区段的位图、参与校验的区段及其指纹
+     */
+    static final class StoredRoom {
+        final long start;
+        final long[] sections;
+        final long[][] masks;
+        final long[] stampSections;
+        final long[] stamps;
+
+        StoredRoom(long start, long[] sections, long[][] masks, long[] stampSections, long[] stamps) {
+            this.start = start;
+            this.sections = sections;
+            this.masks = masks;
+            this.stampSections = stampSections;
+            this.stamps = stamps;
+        }
+
+        int byteSize() {
+            return ROOM_HEADER_BYTES + sections.length * MEMBER_SECTION_BYTES + stampSections.length * STAMP_SECTION_BYTES;
+        }
+    }
+
+    private static final class Region {
+        final RoomRegionFile file;
+        final BitSet pendingSlots = new BitSet(RoomRegionFile.SLOTS);
+        int loadedChunks;
+
+        Region(RoomRegionFile file) {
+            this.file = file;
+            markAllPending();
+        }
+
+        void markAllPending() {
+            pendingSlots.clear();
+            if (file == null) return;
+            for (int slot = 0; slot < RoomRegionFile.SLOTS; slot++) {
+                if (file.hasData(slot)) pendingSlots.set(slot);
+            }
+        }
+    }
+
+    private static final class LevelState {
+        final Path directory;
+        final Map<Long, Region> regions = new ConcurrentHashMap<>();
+        // 有区块加载后需要重新检查待恢复的槽位
+        boolean restoreScanNeeded;
+
+        LevelState(Path directory) {
+            this.directory = directory;
+        }
+    }
+
+    // === 事件 ===
+
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getLevel() instanceof ServerLevel level && event.getChunk() instanceof LevelChunk) {
+            LevelState state = stateFor(level);
+            int chunkX = event.getChunk().getPos().x;
+            int chunkZ = event.getChunk().getPos().z;
+            regionFor(state, chunkX >> 5, chunkZ >> 5).loadedChunks++;
+            state.restoreScanNeeded = true;
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelSave(LevelEvent.Save event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            RoomManager.saveRooms(level);
+        }
+    }
+
+    // === 由 RoomManager 调用 ===
+
+    /**
+     * 区块卸载、房间即将被释放时调用：房间立即写回所属槽位，区域内的区块全部卸载后关闭文件
+     * @param live 起点是否仍属于存活的房间；这样的旧记录会被丢弃，由存活房间在释放或保存时重新写入
+     */
+    static void onChunkEvicted(ServerLevel level, int chunkX, int chunkZ, Collection<StoredRoom> evicted, LongPredicate live) {
+        LevelState state = stateFor(level);
+        writeRooms(state, evicted, live);
+        long key = regionKey(chunkX >> 5, chunkZ >> 5);
+        Region region = state.regions.get(key);
+        if (region != null && --region.loadedChunks <= 0) {
+            close(state, key, region);
+        }
+    }
+
+    /**
+     * 把存活的房间写回各自的槽位并刷新映射
+     */
+    static void save(ServerLevel level, Collection<StoredRoom> liveRooms, LongPredicate live) {
+        LevelState state = stateFor(level);
+        writeRooms(state, liveRooms, live);
+        for (Map.Entry<Long, Region> entry : state.regions.entrySet()) {
+            Region region = entry.getValue();
+            if (region.loadedChunks <= 0) {
+                // 只为保存而打开的区域
+                close(state, entry.getKey(), region);
+            } else if (region.file != null) {
+                region.file.flush();
+            }
+        }
+    }
+
+    /**
+     * 世界卸载：写回并关闭该世界的全部区域
+     */
+    static void saveAndClose(ServerLevel level, Collection<StoredRoom> liveRooms, LongPredicate live) {
+        save(level, liveRooms, live);
+        LevelState state = LEVELS.remove(level);
+        if (state != null) {
+            for (Map.Entry<Long, Region> entry : state.regions.entrySet()) {
+                close(state, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 房间数据被整体清空后，重新把已打开区域中有数据的槽位排队恢复
+     */
+    static void reloadAll() {
+        for (LevelState state : LEVELS.values()) {
+            for (Region region : state.regions.values()) {
+                region.markAllPending();
+            }
+            state.restoreScanNeeded = true;
+        }
+    }
+
+    /**
+     * 在预算内恢复待恢复的房间，由 RoomDetectionScheduler 每个服务端tick调用
+     * 每校验一个区段消耗一次检查
+     */
+    public static void processRestores(WorkBudget budget) {
+        for (Map.Entry<ServerLevel, LevelState> levelEntry : LEVELS.entrySet()) {
+            ServerLevel level = levelEntry.getKey();
+            LevelState state = levelEntry.getValue();
+            if (!state.restoreScanNeeded) continue;
+            for (Region region : state.regions.values()) {
+                if (region.file == null) continue;
+                for (int slot = region.pendingSlots.nextSetBit(0); slot >= 0; slot = region.pendingSlots.nextSetBit(slot + 1)) {
+                    if (!restoreSlot(level, region, slot, budget)) return;
+                }
+            }
+            state.restoreScanNeeded = false;
+        }
+    }
+
+    /**
+     * 把存活的房间转换为待写入的形式
+     */
+    static StoredRoom capture(RoomInfo info, RoomSectionStorage storage) {
+        long[] sections = info.getSections();
+        List<long[]> masks = new ArrayList<>(sections.length);
+        long[] kept = new long[sections.length];
+        int keptCount = 0;
+        for (long section : sections) {
+            long[] mask = storage.mask(info.getId(), section);
+            // 方块可能已全部被其他房间覆盖
+            if (mask == null) continue;
+            kept[keptCount++] = section;
+            masks.add(mask);
+        }
+        long[] keptSections = new long[keptCount];
+        System.arraycopy(kept, 0, keptSections, 0, keptCount);
+        return new StoredRoom(info.getStart(), keptSections, masks.toArray(new long[0][]),
+            info.getStampSections(), info.getStamps());
+    }
+
+    public static String getStats() {
+        int regions = 0;
+        int pending = 0;
+        for (LevelState state : LEVELS.values()) {
+            regions += state.regions.size();
+            for (Region region : state.regions.values()) {
+                pending += region.pendingSlots.cardinality();
+            }
+        }
+        return String.format("持久化: %d 区域, 待恢复区块 %d, 已恢复 %d, 校验失败 %d",
+            regions, pending, restoredRooms.get(), rejectedRooms.get());
+    }
+
+    // === 恢复 ===
+
+    /**
+     * 直接在映射内存上解析一个槽位的房间并恢复
+     * @return false 表示预算已用完
+     */
+    private static boolean restoreSlot(ServerLevel level, Region region, int slot, WorkBudget budget) {
+        ByteBuffer data = region.file.read(slot);
+        if (data == null || data.remaining() < 8 || data.getInt(0) != VERSION) {
+            region.pendingSlots.clear(slot);
+            return true;
+        }
+        PassabilityCache cache = PassabilityCache.forLevel(level);
+        LongHashSet rejected = null;
+        boolean waiting = false;
+        boolean finished = true;
+        int roomCount = data.getInt(4);
+        int offset = 8;
+        for (int r = 0; r < roomCount; r++) {
+            long start = data.getLong(offset);
+            int memberSections = Short.toUnsignedInt(data.getShort(offset + 8));
+            int stampSections = Short.toUnsignedInt(data.getShort(offset + 10));
+            int roomOffset = offset;
+            offset += ROOM_HEADER_BYTES + memberSections * MEMBER_SECTION_BYTES + stampSections * STAMP_SECTION_BYTES;
+
+            BlockPos startPos = BlockPos.of(start);
+            if (RoomManager.isRoomAt(level, startPos)) continue;
+            int stampOffset = roomOffset + ROOM_HEADER_BYTES + memberSections * MEMBER_SECTION_BYTES;
+            if (!chunksLoaded(level, data, stampOffset, stampSections)) {
+                waiting = true;
+                continue;
+            }
+            // 只要求预算还有剩余即可开始，余下的开销尽量扣除：
+            // 区段很多的房间不会因为整体开销超过单个tick的预算而永远无法恢复
+            if (!budget.tryCheck()) {
+                finished = false;
+                break;
+            }
+            charge(budget, stampSections - 1);
+            if (stampsMatch(cache, data, stampOffset, stampSections)) {
+                if (RoomManager.restoreRoom(level, startPos, members(data, roomOffset + ROOM_HEADER_BYTES, memberSections))) {
+                    restoredRooms.incrementAndGet();
+                }
+            } else {
+                rejectedRooms.incrementAndGet();
+                if (rejected == null) rejected = new LongHashSet(8);
+                rejected.add(start);
+            }
+        }
+        if (rejected != null) {
+            LongHashSet drop = rejected;
+            rewriteSlot(region, slot, List.of(), drop::contains);
+        }
+        if (finished && !waiting) {
+            region.pendingSlots.clear(slot);
+        }
+        return finished;
+    }
+
+    // 扣除至多 checks 次检查，预算用完即停止；本次恢复继续完成，下一个房间再等待
+    private static void charge(WorkBudget budget, int checks) {
+        for (int i = 0; i < checks; i++) {
+            if (!budget.tryCheck()) return;
+        }
+    }
+
+    private static boolean chunksLoaded(ServerLevel level, ByteBuffer data, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            long key = data.getLong(offset + i * STAMP_SECTION_BYTES);
+            if (level.getChunkSource().getChunkNow(SectionPos.x(key), SectionPos.z(key)) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean stampsMatch(PassabilityCache cache, ByteBuffer data, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            long key = data.getLong(offset + i * STAMP_SECTION_BYTES);
+            long stamp = cache.getLayerStamp(SectionPos.x(key), SectionPos.y(key), SectionPos.z(key),
+                PassabilityCache.Layer.ROOM);
+            if (stamp != data.getLong(offset + i * STAMP_SECTION_BYTES + 8)) return false;
+        }
+        return true;
+    }
+
+    private static long[] members(ByteBuffer data, int offset, int sectionCount) {
+        int count = 0;
+        for (int s = 0; s < sectionCount; s++) {
+            int maskOffset = offset + s * MEMBER_SECTION_BYTES + 8;
+            for (int w = 0; w < MASK_WORDS; w++) {
+                count += Long.bitCount(data.getLong(maskOffset + w * 8));
+            }
+        }
+        long[] members = new long[count];
+        int n = 0;
+        for (int s = 0; s < sectionCount; s++) {
+            int sectionOffset = offset + s * MEMBER_SECTION_BYTES;
+            long key = data.getLong(sectionOffset);
+            int baseX = SectionPos.sectionToBlockCoord(SectionPos.x(key));
+            int baseY = SectionPos.sectionToBlockCoord(SectionPos.y(key));
+            int baseZ = SectionPos.sectionToBlockCoord(SectionPos.z(key));
+            for (int w = 0; w < MASK_WORDS; w++) {
+                long bits = data.getLong(sectionOffset + 8 + w * 8);
+                while (bits != 0) {
+                    int index = (w << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    members[n++] = BlockPos.asLong(baseX + (index & 15), baseY + (index >> 8), baseZ + ((index >> 4) & 15));
+                }
+            }
+        }
+        return members;
+    }
+
+    // === 写入 ===
+
+    // 按区域和槽位分组写入
+    private static void writeRooms(LevelState state, Collection<StoredRoom> rooms, LongPredicate live) {
+        Map<Long, Map<Integer, List<StoredRoom>>> grouped = new LinkedHashMap<>();
+        for (StoredRoom room : rooms) {
+            if (room.sections.length == 0) continue;
+            int chunkX = BlockPos.getX(room.start) >> 4;
+            int chunkZ = BlockPos.getZ(room.start) >> 4;
+            grouped.computeIfAbsent(regionKey(chunkX >> 5, chunkZ >> 5), k -> new LinkedHashMap<>())
+                .computeIfAbsent(RoomRegionFile.slotOf(chunkX, chunkZ), k -> new ArrayList<>())
+                .add(room);
+        }
+        for (Map.Entry<Long, Map<Integer, List<StoredRoom>>> regionEntry : grouped.entrySet()) {
+            long key = regionEntry.getKey();
+            Region region = regionFor(state, (int) key, (int) (key >> 32));
+            for (Map.Entry<Integer, List<StoredRoom>> slotEntry : regionEntry.getValue().entrySet()) {
+                rewriteSlot(region, slotEntry.getKey(), slotEntry.getValue(), live);
+            }
+        }
+    }
+
+    /**
+     * 重写槽位：保留旧记录中起点不在 fresh 里、且 drop 不成立的房间（按原始字节复制），再追加 fresh
+     */
+    private static void rewriteSlot(Region region, int slot, List<StoredRoom> fresh, LongPredicate drop) {
+        if (region.file == null) return;
+        LongHashSet freshStarts = new LongHashSet(Math.max(4, fresh.size()));
+        int size = 8;
+        for (StoredRoom room : fresh) {
+            freshStarts.add(room.start);
+            size += room.byteSize();
+        }
+
+        ByteBuffer old = region.file.read(slot);
+        List<int[]> keptRanges = new ArrayList<>();
+        if (old != null && old.remaining() >= 8 && old.getInt(0) == VERSION) {
+            int roomCount = old.getInt(4);
+            int offset = 8;
+            for (int r = 0; r < roomCount; r++) {
+                long start = old.getLong(offset);
+                int length = ROOM_HEADER_BYTES
+                    + Short.toUnsignedInt(old.getShort(offset + 8)) * MEMBER_SECTION_BYTES
+                    + Short.toUnsignedInt(old.getShort(offset + 10)) * STAMP_SECTION_BYTES;
+                if (!freshStarts.contains(start) && !drop.test(start)) {
+                    keptRanges.add(new int[] {offset, length});
+                    size += length;
+                }
+                offset += length;
+            }
+        }
+
+        int roomCount = keptRanges.size() + fresh.size();
+        ByteBuffer out = ByteBuffer.allocate(roomCount == 0 ? 0 : size);
+        if (roomCount > 0) {
+            out.putInt(VERSION);
+            out.putInt(roomCount);
+            for (int[] range : keptRanges) {
+                out.put(old.slice(range[0], range[1]));
+            }
+            for (StoredRoom room : fresh) {
+                out.putLong(room.start);
+                out.putShort((short) room.sections.length);
+                out.putShort((short) room.stampSections.length);
+                for (int s = 0; s < room.sections.length; s++) {
+                    out.putLong(room.sections[s]);
+                    for (long word : room.masks[s]) {
+                        out.putLong(word);
+                    }
+                }
+                for (int s = 0; s < room.stampSections.length; s++) {
+                    out.putLong(room.stampSections[s]);
+                    out.putLong(room.stamps[s]);
+                }
+            }
+        }
+        out.flip();
+        try {
+            region.file.write(slot, out);
+        } catch (IOException e) {
+            EnclosedSpaceRenderCulling.LOGGER.warn("Failed to write room slot {}: {}", slot, e.getMessage());
+        }
+    }
+
+    // === 区域 ===
+
+    private static LevelState stateFor(ServerLevel level) {
+        return LEVELS.computeIfAbsent(level, l -> new LevelState(
+            DimensionType.getStorageFolder(l.dimension(), l.getServer().getWorldPath(LevelResource.ROOT))
+                .resolve("data").resolve(EnclosedSpaceRenderCulling.MODID).resolve("rooms")));
+    }
+
+    private static Region regionFor(LevelState state, int regionX, int regionZ) {
+        return state.regions.computeIfAbsent(regionKey(regionX, regionZ), key -> {
+            Path path = state.directory.resolve("r." + regionX + "." + regionZ + ".rooms");
+            try {
+                return new Region(new RoomRegionFile(path));
+            } catch (IOException e) {
+                EnclosedSpaceRenderCulling.LOGGER.warn("Failed to open room file {}: {}", path, e.getMessage());
+                return new Region(null);
+            }
+        });
+    }
+
+    private static void close(LevelState state, long key, Region region) {
+        state.regions.remove(key, region);
+        if (region.file == null) return;
+        try {
+            region.file.close();
+        } catch (IOException e) {
+            EnclosedSpaceRenderCulling.LOGGER.warn("Failed to close room file: {}", e.getMessage());
+        }
+    }
+
+    private static long regionKey(int regionX, int regionZ) {
+        return (regionX & 0xFFFFFFFFL) | ((long) regionZ << 32);
+    }
+}
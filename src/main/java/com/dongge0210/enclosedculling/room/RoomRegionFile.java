@@ -0,0 +1,144 @@
+package com.dongge0210.enclosedculling.room;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * 房间区域文件 - 与原版 .mca 相同的布局：一个区域覆盖 32x32 区块，文件按 4 KiB 扇区划分，
+ * 开头两个扇区是 1024 个槽位的表（每个区块一个槽位：起始扇区、扇区数），其后是各槽位的数据
+ *
+ * 文件整体通过 FileChannel.map 映射：读取直接返回映射内存上的切片，不复制到堆；
+ * 写入时数据仍能放进原来的扇区就原地覆盖，否则在空闲扇区中首次适配重新分配，文件增长时重新映射
+ * 槽位数据以一个 int 长度开头。非线程安全
+ */
+final class RoomRegionFile implements AutoCloseable {
+    static final int SLOTS = 32 * 32;
+    private static final int SECTOR_BYTES = 4096;
+    private static final int HEADER_SECTORS = SLOTS * 8 / SECTOR_BYTES;
+
+    private final FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int totalSectors;
+    private final int[] sectorOffsets = new int[SLOTS];
+    private final int[] sectorCounts = new int[SLOTS];
+    private final BitSet usedSectors = new BitSet();
+
+    RoomRegionFile(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        long size = channel.size();
+        totalSectors = Math.max(HEADER_SECTORS, (int) ((size + SECTOR_BYTES - 1) / SECTOR_BYTES));
+        // 映射范围超过文件长度时文件会被扩展，新文件的槽位表全为 0
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) totalSectors * SECTOR_BYTES);
+        usedSectors.set(0, HEADER_SECTORS);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int offset = mapped.getInt(slot * 8);
+            int count = mapped.getInt(slot * 8 + 4);
+            // 损坏或相互重叠的槽位直接丢弃
+            int overlap = count > 0 ? usedSectors.nextSetBit(offset) : -1;
+            if (count <= 0 || offset < HEADER_SECTORS || offset + count > totalSectors
+                || (overlap >= 0 && overlap < offset + count)) {
+                if (count != 0 || offset != 0) writeHeader(slot, 0, 0);
+                continue;
+            }
+            sectorOffsets[slot] = offset;
+            sectorCounts[slot] = count;
+            usedSectors.set(offset, offset + count);
+        }
+    }
+
+    /**
+     * 区块在区域内的槽位
+     */
+    static int slotOf(int chunkX, int chunkZ) {
+        return (chunkX & 31) | ((chunkZ & 31) << 5);
+    }
+
+    boolean hasData(int slot) {
+        return sectorCounts[slot] > 0;
+    }
+
+    /**
+     * @return 槽位数据在映射内存上的只读切片（不复制），没有数据时为 null
+     */
+    ByteBuffer read(int slot) {
+        if (sectorCounts[slot] == 0) return null;
+        int base = sectorOffsets[slot] * SECTOR_BYTES;
+        int length = mapped.getInt(base);
+        if (length < 0 || length > sectorCounts[slot] * SECTOR_BYTES - 4) return null;
+        return mapped.slice(base + 4, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * 写入槽位数据，payload 为空时释放槽位
+     */
+    void write(int slot, ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        if (length == 0) {
+            free(slot);
+            return;
+        }
+        int needed = (length + 4 + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        int offset = sectorOffsets[slot];
+        if (needed > sectorCounts[slot]) {
+            free(slot);
+            offset = allocate(needed);
+        } else if (needed < sectorCounts[slot]) {
+            // 原地写入，归还多余的扇区
+            usedSectors.clear(offset + needed, offset + sectorCounts[slot]);
+        }
+        int base = offset * SECTOR_BYTES;
+        mapped.putInt(base, length);
+        mapped.put(base + 4, payload, payload.position(), length);
+        sectorOffsets[slot] = offset;
+        sectorCounts[slot] = needed;
+        usedSectors.set(offset, offset + needed);
+        writeHeader(slot, offset, needed);
+    }
+
+    void flush() {
+        mapped.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private void free(int slot) {
+        if (sectorCounts[slot] > 0) {
+            usedSectors.clear(sectorOffsets[slot], sectorOffsets[slot] + sectorCounts[slot]);
+        }
+        sectorOffsets[slot] = 0;
+        sectorCounts[slot] = 0;
+        writeHeader(slot, 0, 0);
+    }
+
+    // 首次适配，找不到连续空闲扇区时扩展文件
+    private int allocate(int count) throws IOException {
+        int start = usedSectors.nextClearBit(HEADER_SECTORS);
+        while (start < totalSectors) {
+            int end = usedSectors.nextSetBit(start);
+            if (end < 0 || end - start >= count) break;
+            start = usedSectors.nextClearBit(end);
+        }
+        if (start + count > totalSectors) {
+            totalSectors = start + count;
+            mapped.force();
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) totalSectors * SECTOR_BYTES);
+        }
+        return start;
+    }
+
+    private void writeHeader(int slot, int offset, int count) {
+        mapped.putInt(slot * 8, offset);
+        mapped.putInt(slot * 8 + 4, count);
+    }
+}
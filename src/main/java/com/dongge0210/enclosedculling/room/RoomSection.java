@@ -0,0 +1,161 @@
+package com.dongge0210.enclosedculling.room;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 单个区段（16x16x16）的房间归属 - 与原版 PalettedContainer 相同的思路：
+ * 区段内出现的房间ID存放在一个很小的局部调色板里，每个方块只保存调色板下标，按位紧密打包在 long[] 中
+ *
+ * 调色板下标 0 固定为 NO_ROOM；每个下标维护引用计数，引用归零的下标可被新的房间ID复用。
+ * 只有一个房间时每个方块占 1 位（512 字节/区段），调色板增长时位宽随之增加
+ * 服务端和客户端线程都可能访问，所有操作持有对象锁
+ */
+final class RoomSection {
+    static final int NO_ROOM = 0;
+    static final int VOLUME = 16 * 16 * 16;
+
+    private int bits;                 // 0 表示整个区段都是调色板下标 0
+    private int valuesPerLong;
+    private long mask;
+    private long[] data = new long[0];
+    private int[] palette = new int[2];
+    private int[] refs = new int[2];  // 每个调色板下标被多少个方块引用
+    private int paletteSize = 1;
+
+    RoomSection() {
+        palette[0] = NO_ROOM;
+        refs[0] = VOLUME;
+    }
+
+    static int localIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    synchronized int get(int index) {
+        return palette[read(index)];
+    }
+
+    /**
+     * @return 该位置原来的房间ID
+     */
+    synchronized int set(int index, int roomId) {
+        int oldSlot = read(index);
+        if (palette[oldSlot] == roomId) return roomId;
+        int slot = slotFor(roomId);
+        refs[oldSlot]--;
+        refs[slot]++;
+        write(index, slot);
+        return palette[oldSlot];
+    }
+
+    /**
+     * 清除指定房间在本区段的所有方块
+     * @return 清除的方块数
+     */
+    synchronized int removeRoom(int roomId) {
+        int slot = find(roomId);
+        if (slot <= 0 || refs[slot] == 0) return 0;
+        int removed = refs[slot];
+        for (int i = 0; i < VOLUME; i++) {
+            if (read(i) == slot) write(i, 0);
+        }
+        refs[0] += removed;
+        refs[slot] = 0;
+        return removed;
+    }
+
+    /**
+     * 依次回调房间在本区段内每个方块的局部下标
+     */
+    synchronized void forEach(int roomId, IntConsumer action) {
+        int slot = find(roomId);
+        if (slot <= 0 || refs[slot] == 0) return;
+        for (int i = 0; i < VOLUME; i++) {
+            if (read(i) == slot) action.accept(i);
+        }
+    }
+
+    /**
+     * @return 房间在本区段的方块位图（64 个 long，按局部下标），没有方块时为 null
+     */
+    synchronized long[] mask(int roomId) {
+        int slot = find(roomId);
+        if (slot <= 0 || refs[slot] == 0) return null;
+        long[] mask = new long[VOLUME / 64];
+        for (int i = 0; i < VOLUME; i++) {
+            if (read(i) == slot) mask[i >>> 6] |= 1L << (i & 63);
+        }
+        return mask;
+    }
+
+    synchronized boolean isEmpty() {
+        return refs[0] == VOLUME;
+    }
+
+    synchronized int estimateBytes() {
+        return data.length * Long.BYTES + palette.length * Integer.BYTES * 2;
+    }
+
+    // === 调色板 ===
+
+    private int find(int roomId) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == roomId) return i;
+        }
+        return -1;
+    }
+
+    private int slotFor(int roomId) {
+        int slot = find(roomId);
+        if (slot >= 0) return slot;
+        // 复用引用归零的下标
+        for (int i = 1; i < paletteSize; i++) {
+            if (refs[i] == 0) {
+                palette[i] = roomId;
+                return i;
+            }
+        }
+        if (paletteSize == palette.length) {
+            palette = Arrays.copyOf(palette, paletteSize << 1);
+            refs = Arrays.copyOf(refs, paletteSize << 1);
+        }
+        slot = paletteSize++;
+        palette[slot] = roomId;
+        refs[slot] = 0;
+        int needed = 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+        if (needed > bits) {
+            resize(needed);
+        }
+        return slot;
+    }
+
+    // === 位打包存储，每个值不跨越 long 边界 ===
+
+    private int read(int index) {
+        if (bits == 0) return 0;
+        int cell = index / valuesPerLong;
+        int shift = (index - cell * valuesPerLong) * bits;
+        return (int) ((data[cell] >>> shift) & mask);
+    }
+
+    private void write(int index, int value) {
+        int cell = index / valuesPerLong;
+        int shift = (index - cell * valuesPerLong) * bits;
+        data[cell] = (data[cell] & ~(mask << shift)) | ((long) value << shift);
+    }
+
+    private void resize(int newBits) {
+        int[] values = new int[VOLUME];
+        for (int i = 0; i < VOLUME; i++) {
+            values[i] = read(i);
+        }
+        bits = newBits;
+        valuesPerLong = 64 / newBits;
+        mask = (1L << newBits) - 1;
+        data = new long[(VOLUME + valuesPerLong - 1) / valuesPerLong];
+        for (int i = 0; i < VOLUME; i++) {
+            if (values[i] != 0) write(i, values[i]);
+        }
+    }
+}
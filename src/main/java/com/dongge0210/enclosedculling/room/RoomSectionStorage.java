@@ -0,0 +1,123 @@
+package com.dongge0210.enclosedculling.room;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 一个维度的房间归属存储 - 以 SectionPos.asLong 为键保存 RoomSection
+ * 房间占用哪些区段由 RoomInfo 记录，失效和高亮只访问这些区段；没有任何方块的区段会被立即移除
+ */
+final class RoomSectionStorage {
+    private final Map<Long, RoomSection> sections = new ConcurrentHashMap<>();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    // 16x8x16 网格 -> 以该网格内的位置为起点建立的房间；同一网格内后来的检测沿用该房间
+    private final Map<Long, Integer> cellAnchors = new ConcurrentHashMap<>();
+
+    /**
+     * 网格键：x、z 按 16 格，y 按 8 格划分
+     */
+    static long cellKey(BlockPos pos) {
+        return SectionPos.asLong(pos.getX() >> 4, pos.getY() >> 3, pos.getZ() >> 4);
+    }
+
+    /**
+     * @return 房间ID，未登记时为 RoomSection.NO_ROOM
+     */
+    int get(BlockPos pos) {
+        RoomSection section = sections.get(SectionPos.asLong(pos));
+        return section == null ? RoomSection.NO_ROOM
+            : section.get(RoomSection.localIndex(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    /**
+     * @return 该位置原来的房间ID
+     */
+    int put(long packedPos, int roomId) {
+        int x = BlockPos.getX(packedPos), y = BlockPos.getY(packedPos), z = BlockPos.getZ(packedPos);
+        long sectionKey = SectionPos.asLong(SectionPos.blockToSectionCoord(x),
+            SectionPos.blockToSectionCoord(y), SectionPos.blockToSectionCoord(z));
+        RoomSection section = sections.computeIfAbsent(sectionKey, k -> {
+            RoomSection created = new RoomSection();
+            estimatedBytes.addAndGet(created.estimateBytes());
+            return created;
+        });
+        int before = section.estimateBytes();
+        int previous = section.set(RoomSection.localIndex(x, y, z), roomId);
+        estimatedBytes.addAndGet(section.estimateBytes() - before);
+        return previous;
+    }
+
+    /**
+     * 清除房间在给定区段中的全部方块
+     * @return 清除的方块数
+     */
+    int removeRoom(int roomId, long[] sectionKeys) {
+        int removed = 0;
+        for (long key : sectionKeys) {
+            RoomSection section = sections.get(key);
+            if (section == null) continue;
+            removed += section.removeRoom(roomId);
+            if (section.isEmpty() && sections.remove(key, section)) {
+                estimatedBytes.addAndGet(-section.estimateBytes());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return 网格的锚定房间，没有时为 RoomSection.NO_ROOM
+     */
+    int getCellAnchor(long cellKey) {
+        return cellAnchors.getOrDefault(cellKey, RoomSection.NO_ROOM);
+    }
+
+    void setCellAnchor(long cellKey, int roomId) {
+        cellAnchors.put(cellKey, roomId);
+    }
+
+    void removeCellAnchor(long cellKey, int roomId) {
+        cellAnchors.remove(cellKey, roomId);
+    }
+
+    /**
+     * 依次回调房间在给定区段中每个方块的 BlockPos.asLong 坐标
+     */
+    void forEachVoxel(int roomId, long[] sectionKeys, LongConsumer action) {
+        for (long key : sectionKeys) {
+            RoomSection section = sections.get(key);
+            if (section == null) continue;
+            int baseX = SectionPos.sectionToBlockCoord(SectionPos.x(key));
+            int baseY = SectionPos.sectionToBlockCoord(SectionPos.y(key));
+            int baseZ = SectionPos.sectionToBlockCoord(SectionPos.z(key));
+            section.forEach(roomId, index -> action.accept(BlockPos.asLong(
+                baseX + (index & 15), baseY + (index >> 8), baseZ + ((index >> 4) & 15))));
+        }
+    }
+
+    /**
+     * @return 房间在指定区段的方块位图，见 RoomSection.mask
+     */
+    long[] mask(int roomId, long sectionKey) {
+        RoomSection section = sections.get(sectionKey);
+        return section == null ? null : section.mask(roomId);
+    }
+
+    int getSectionCount() {
+        return sections.size();
+    }
+
+    long estimateBytes() {
+        return estimatedBytes.get();
+    }
+
+    void clear() {
+        sections.clear();
+        cellAnchors.clear();
+        estimatedBytes.set(0);
+    }
+}
@@ -0,0 +1,79 @@
+package com.dongge0210.enclosedculling.room;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 房间状态的不可变快照 - 由所属世界的线程在每tick结束时构建，通过 volatile 引用整体发布
+ *
+ * 读取方（tick mixin、渲染器）在一次tick或一帧内持有同一个快照，得到一致的连通群和玩家所在房间，
+ * 不会看到合并到一半的连通群，读取也不需要加锁。房间方块归属仍由 RoomSectionStorage 提供，
+ * 快照之后才登记的房间在快照中没有连通群，调用方应按"未知"处理
+ *
+ * 快照同时保存每个在线玩家可见的房间（与玩家所在房间同一连通群的全部房间，按房间ID的位图），
+ * 实体和方块实体每tick的可见性判断只需查房间ID再测试一位
+ */
+public final class RoomSnapshot {
+    static final RoomSnapshot EMPTY = new RoomSnapshot(0, new int[0], 0, 0, Map.of(), Map.of());
+
+    private final long epoch;
+    // 房间ID -> 连通群ID，0 表示快照中没有该房间
+    private final int[] groupOf;
+    private final int roomCount;
+    private final int groupCount;
+    private final Map<UUID, Integer> playerRooms;
+    // 玩家 -> 可见房间位图，同一连通群的玩家共用一个位图，发布后不再修改
+    private final Map<UUID, BitSet> playerVisibleRooms;
+
+    RoomSnapshot(long epoch, int[] groupOf, int roomCount, int groupCount, Map<UUID, Integer> playerRooms,
+                 Map<UUID, BitSet> playerVisibleRooms) {
+        this.epoch = epoch;
+        this.groupOf = groupOf;
+        this.roomCount = roomCount;
+        this.groupCount = groupCount;
+        this.playerRooms = playerRooms;
+        this.playerVisibleRooms = playerVisibleRooms;
+    }
+
+    /**
+     * 发布序号，每次发布新快照时递增
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return 房间所在的连通群ID，快照中没有该房间时为 -1
+     */
+    public int getGroup(int roomId) {
+        if (roomId <= 0 || roomId >= groupOf.length) return -1;
+        int group = groupOf[roomId];
+        return group != 0 ? group : -1;
+    }
+
+    /**
+     * @return 玩家所在的房间ID，未知时为 null
+     */
+    public Integer getPlayerRoom(UUID playerId) {
+        return playerRooms.get(playerId);
+    }
+
+    /**
+     * 房间是否对玩家可见（与玩家所在房间属于同一连通群）
+     * 玩家所在房间未知、或房间在快照中没有连通群时按可见处理
+     */
+    public boolean isRoomVisibleTo(UUID playerId, int roomId) {
+        BitSet visible = playerVisibleRooms.get(playerId);
+        if (visible == null || getGroup(roomId) == -1) return true;
+        return visible.get(roomId);
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+}
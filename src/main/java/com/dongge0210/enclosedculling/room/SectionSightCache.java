@@ -0,0 +1,248 @@
+package com.dongge0210.enclosedculling.room;
+
+import com.dongge0210.enclosedculling.culling.PassabilityCache;
+import com.dongge0210.enclosedculling.culling.VoxelRaycast;
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+
+import java.util.Arrays;
+
+/**
+ * 区段对视线缓存 - 以（观察者区段, 目标区段）为键缓存两个 16³ 区段之间是否可能互相看见，
+ * 同一区段中的所有玩家共用条目，不再按玩家分别存放
+ *
+ * 查询者自己的视线、或两个区段采样点（中心和八个角上的体素中心）之间任意一条视线畅通，整个区段对即记为可见，
+ * 命中可见条目直接返回可见。采样视线可能漏掉小的开口，因此遮挡条目不能直接作为结果：它只表示采样视线全部被阻挡，
+ * 命中时仍检测查询者自己的视线，畅通则把条目改为可见。这样返回的遮挡总是来自查询者自己被阻挡的视线，
+ * 不会比逐次检测剔除得更多。相邻区段之间只检测查询者自己的视线，不进入缓存。
+ *
+ * 两个区段之间的视线都在它们共同的包围盒内，方块变化只失效包围盒包含变化区段的条目，不再依赖过期时间；
+ * 变化的区段先登记，下次查询时一次性扫描失效。键和值保存在开放寻址的基本类型数组中，容量固定，
+ * 装满时整体清空。只在所属世界的线程上访问
+ */
+final class SectionSightCache {
+    private static final int CAPACITY = 1 << 14;
+    private static final int MAX_ENTRIES = CAPACITY / 2;
+    // 登记的变化区段超过该数量时直接清空，不再逐个扫描
+    private static final int MAX_PENDING_CHANGES = 256;
+
+    private static final byte EMPTY = 0;
+    private static final byte VISIBLE = 1;
+    private static final byte OCCLUDED = 2;
+
+    // 每个区段的采样点：中心和八个角上的体素中心
+    private static final int SAMPLES = 9;
+
+    private final Level level;
+    private final long[] viewerKeys = new long[CAPACITY];
+    private final long[] targetKeys = new long[CAPACITY];
+    private final byte[] values = new byte[CAPACITY];
+    private int size;
+    private int occludedCount;
+
+    // 尚未扫描的变化区段
+    private final LongHashSet changedSet = new LongHashSet(MAX_PENDING_CHANGES);
+    private final long[] changed = new long[MAX_PENDING_CHANGES];
+    private int changedCount;
+    private boolean overflowed;
+
+    SectionSightCache(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * @return 从 viewer 能否看到 target：区段对可见时为 true，否则按 viewer 自己的视线判断；缓存未命中时计算并缓存
+     */
+    boolean isVisible(BlockPos viewer, BlockPos target) {
+        int viewerX = viewer.getX() >> 4, viewerY = viewer.getY() >> 4, viewerZ = viewer.getZ() >> 4;
+        int targetX = target.getX() >> 4, targetY = target.getY() >> 4, targetZ = target.getZ() >> 4;
+        if (Math.abs(viewerX - targetX) <= 1 && Math.abs(viewerY - targetY) <= 1 && Math.abs(viewerZ - targetZ) <= 1) {
+            return hasOwnSight(viewer, target);
+        }
+        applyChanges();
+
+        long viewerKey = SectionPos.asLong(viewerX, viewerY, viewerZ);
+        long targetKey = SectionPos.asLong(targetX, targetY, targetZ);
+        int slot = slotFor(viewerKey, targetKey);
+        if (values[slot] == VISIBLE) {
+            return true;
+        }
+        if (values[slot] == OCCLUDED) {
+            // 采样视线全部被阻挡不能证明遮挡，仍以查询者自己的视线为准
+            if (!hasOwnSight(viewer, target)) return false;
+            values[slot] = VISIBLE;
+            occludedCount--;
+            return true;
+        }
+
+        boolean visible = compute(viewer, target, viewerX, viewerY, viewerZ, targetX, targetY, targetZ);
+        if (size >= MAX_ENTRIES) {
+            clear();
+            slot = slotFor(viewerKey, targetKey);
+        }
+        viewerKeys[slot] = viewerKey;
+        targetKeys[slot] = targetKey;
+        values[slot] = visible ? VISIBLE : OCCLUDED;
+        size++;
+        if (!visible) occludedCount++;
+        return visible;
+    }
+
+    /**
+     * 登记发生方块变化的区段，包围盒包含它的条目在下次查询前失效
+     */
+    void onSectionChanged(long sectionKey) {
+        if (overflowed || size == 0) return;
+        if (changedSet.add(sectionKey)) {
+            if (changedCount == MAX_PENDING_CHANGES) {
+                overflowed = true;
+                return;
+            }
+            changed[changedCount++] = sectionKey;
+        }
+    }
+
+    /**
+     * 区块列的数据被替换或卸载，失效包围盒与该列相交的条目
+     * @return 失效的条目数
+     */
+    int invalidateColumn(int chunkX, int chunkZ) {
+        applyChanges();
+        int before = size;
+        retain((minX, minY, minZ, maxX, maxY, maxZ) -> chunkX < minX || chunkX > maxX || chunkZ < minZ || chunkZ > maxZ);
+        return before - size;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(values, EMPTY);
+            size = 0;
+            occludedCount = 0;
+        }
+        clearChanges();
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getOccludedCount() {
+        return occludedCount;
+    }
+
+    // 查询者自己的视线优先，其次是两个区段采样点之间的视线，任意一条畅通即可见
+    private boolean compute(BlockPos viewer, BlockPos target, int viewerX, int viewerY, int viewerZ,
+                            int targetX, int targetY, int targetZ) {
+        if (hasOwnSight(viewer, target)) return true;
+        PassabilityCache cache = PassabilityCache.forLevel(level);
+        PassabilityCache.Layer layer = PassabilityCache.Layer.ROOM;
+
+        for (int from = 0; from < SAMPLES; from++) {
+            double fromX = (viewerX << 4) + sampleOffset(from, 0);
+            double fromY = (viewerY << 4) + sampleOffset(from, 1);
+            double fromZ = (viewerZ << 4) + sampleOffset(from, 2);
+            for (int to = 0; to < SAMPLES; to++) {
+                double toX = (targetX << 4) + sampleOffset(to, 0);
+                double toY = (targetY << 4) + sampleOffset(to, 1);
+                double toZ = (targetZ << 4) + sampleOffset(to, 2);
+                if (VoxelRaycast.isClear(cache, layer, fromX, fromY, fromZ, toX, toY, toZ)) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasOwnSight(BlockPos viewer, BlockPos target) {
+        return VoxelRaycast.isClear(PassabilityCache.forLevel(level), PassabilityCache.Layer.ROOM, viewer, target);
+    }
+
+    // 采样点 0 为区段中心，1..8 为八个角上的体素中心（按位选择各轴的两端）
+    private static double sampleOffset(int sample, int axis) {
+        if (sample == 0) return 8.0;
+        return ((sample - 1) >> axis & 1) == 0 ? 0.5 : 15.5;
+    }
+
+    private void applyChanges() {
+        if (overflowed) {
+            clear();
+            return;
+        }
+        if (changedCount == 0) return;
+        retain(this::unaffected);
+        clearChanges();
+    }
+
+    // 条目的包围盒（区段坐标）不包含任何登记的变化区段
+    private boolean unaffected(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        for (int i = 0; i < changedCount; i++) {
+            long key = changed[i];
+            int x = SectionPos.x(key), y = SectionPos.y(key), z = SectionPos.z(key);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) return false;
+        }
+        return true;
+    }
+
+    // 保留满足条件的条目；线性探测的表在删除后原地重新插入剩余条目，保证探测链不断开
+    private void retain(BoxFilter filter) {
+        if (size == 0) return;
+        long[] keptViewers = new long[size];
+        long[] keptTargets = new long[size];
+        byte[] keptValues = new byte[size];
+        int kept = 0;
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            if (values[slot] == EMPTY) continue;
+            long viewerKey = viewerKeys[slot], targetKey = targetKeys[slot];
+            int viewerX = SectionPos.x(viewerKey), viewerY = SectionPos.y(viewerKey), viewerZ = SectionPos.z(viewerKey);
+            int targetX = SectionPos.x(targetKey), targetY = SectionPos.y(targetKey), targetZ = SectionPos.z(targetKey);
+            if (filter.keep(Math.min(viewerX, targetX), Math.min(viewerY, targetY), Math.min(viewerZ, targetZ),
+                Math.max(viewerX, targetX), Math.max(viewerY, targetY), Math.max(viewerZ, targetZ))) {
+                keptViewers[kept] = viewerKey;
+                keptTargets[kept] = targetKey;
+                keptValues[kept] = values[slot];
+                kept++;
+            }
+        }
+        if (kept == size) return;
+        Arrays.fill(values, EMPTY);
+        size = 0;
+        occludedCount = 0;
+        for (int i = 0; i < kept; i++) {
+            int slot = slotFor(keptViewers[i], keptTargets[i]);
+            viewerKeys[slot] = keptViewers[i];
+            targetKeys[slot] = keptTargets[i];
+            values[slot] = keptValues[i];
+            size++;
+            if (keptValues[i] == OCCLUDED) occludedCount++;
+        }
+    }
+
+    private void clearChanges() {
+        if (changedCount > 0 || overflowed) {
+            changedSet.clear();
+            changedCount = 0;
+            overflowed = false;
+        }
+    }
+
+    // 键所在的槽位，或探测链上第一个空槽
+    private int slotFor(long viewerKey, long targetKey) {
+        int slot = mix(viewerKey, targetKey) & (CAPACITY - 1);
+        while (values[slot] != EMPTY && (viewerKeys[slot] != viewerKey || targetKeys[slot] != targetKey)) {
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+        return slot;
+    }
+
+    private static int mix(long viewerKey, long targetKey) {
+        long h = (viewerKey * 0x9E3779B97F4A7C15L) ^ targetKey;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // 按条目的包围盒（区段坐标）决定是否保留
+    @FunctionalInterface
+    private interface BoxFilter {
+        boolean keep(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+    }
+}
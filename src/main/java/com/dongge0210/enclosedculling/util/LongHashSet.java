@@ -0,0 +1,122 @@
+package com.dongge0210.enclosedculling.util;
+
+import java.util.Arrays;
+
+/**
+ * 基于开放寻址（线性探测）的 long 集合
+ * 用于存放打包后的方块坐标（BlockPos.asLong），避免 BlockPos 对象和装箱开销
+ *
+ * clear() 只清空数组内容而保留容量，重复使用时不会产生新的分配
+ */
+public class LongHashSet {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // 0 作为空槽标记，真实的 0 值单独记录
+    private long[] keys;
+    private boolean containsZero;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * 添加元素
+     * @return true 如果元素之前不存在
+     */
+    public boolean add(long key) {
+        if (key == 0L) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int slot = mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0L) {
+            if (current == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size >= resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0L) return containsZero;
+
+        int slot = mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0L) {
+            if (current == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 清空集合（保留已分配的容量）
+     */
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0L);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * 替换为另一个集合的内容，容量足够时复用已有数组
+     */
+    public void copyFrom(LongHashSet other) {
+        if (keys.length != other.keys.length) {
+            allocate(other.keys.length);
+        }
+        System.arraycopy(other.keys, 0, keys, 0, keys.length);
+        containsZero = other.containsZero;
+        size = other.size;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        allocate(newCapacity);
+        for (long key : oldKeys) {
+            if (key == 0L) continue;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    // 坐标打包后低位高度相关，需要先打散再取槽位
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
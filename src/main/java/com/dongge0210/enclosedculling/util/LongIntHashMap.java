@@ -0,0 +1,121 @@
+package com.dongge0210.enclosedculling.util;
+
+import java.util.Arrays;
+
+/**
+ * 基于开放寻址（线性探测）的 long -> int 映射，布局与 LongHashSet 相同
+ * 用于按打包坐标（SectionPos.asLong 等）查找编号，避免装箱和 Map.Entry 分配
+ *
+ * clear() 只清空数组内容而保留容量，重复使用时不会产生新的分配
+ */
+public class LongIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // 0 作为空槽标记，真实的 0 键单独记录
+    private long[] keys;
+    private int[] values;
+    private boolean containsZero;
+    private int zeroValue;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @return 键对应的值，不存在时返回 missing
+     */
+    public int get(long key, int missing) {
+        if (key == 0L) return containsZero ? zeroValue : missing;
+
+        int slot = mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0L) {
+            if (current == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    /**
+     * 键不存在时放入 value
+     * @return 已有的值（不覆盖），键之前不存在时返回 missing
+     */
+    public int putIfAbsent(long key, int value, int missing) {
+        if (key == 0L) {
+            if (containsZero) return zeroValue;
+            containsZero = true;
+            zeroValue = value;
+            size++;
+            return missing;
+        }
+
+        int slot = mix(key) & mask;
+        long current;
+        while ((current = keys[slot]) != 0L) {
+            if (current == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return missing;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 清空映射（保留已分配的容量）
+     */
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0L);
+        containsZero = false;
+        size = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == 0L) continue;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    // 坐标打包后低位高度相关，需要先打散再取槽位
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
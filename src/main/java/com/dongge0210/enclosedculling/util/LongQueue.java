@@ -0,0 +1,61 @@
+package com.dongge0210.enclosedculling.util;
+
+/**
+ * 基于环形缓冲区的 long 队列（FIFO）
+ * 容量按2的幂增长，清空后保留缓冲区，用于泛洪填充的 BFS 前沿
+ */
+public class LongQueue {
+
+    private long[] elements;
+    private int head;
+    private int tail;
+    private int size;
+
+    public LongQueue(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1;
+        elements = new long[capacity];
+    }
+
+    public void enqueue(long value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[tail] = value;
+        tail = (tail + 1) & (elements.length - 1);
+        size++;
+    }
+
+    /**
+     * 取出队首元素，调用前需保证队列非空
+     */
+    public long dequeue() {
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        tail = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        long[] larger = new long[elements.length << 1];
+        int firstPart = elements.length - head;
+        System.arraycopy(elements, head, larger, 0, firstPart);
+        System.arraycopy(elements, 0, larger, firstPart, head);
+        elements = larger;
+        head = 0;
+        tail = size;
+    }
+}
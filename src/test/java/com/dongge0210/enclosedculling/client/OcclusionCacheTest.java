@@ -0,0 +1,146 @@
+package com.dongge0210.enclosedculling.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OcclusionCacheTest {
+
+    @Test
+    void storesAndOverwritesValues() {
+        OcclusionCache cache = new OcclusionCache(64);
+        assertEquals(OcclusionCache.MISS, cache.get(10L));
+        cache.put(10L, true);
+        cache.put(11L, false);
+        assertEquals(OcclusionCache.OCCLUDED, cache.get(10L));
+        assertEquals(OcclusionCache.VISIBLE, cache.get(11L));
+
+        cache.put(10L, false);
+        assertEquals(OcclusionCache.VISIBLE, cache.get(10L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void capacityRoundsToWholeSets() {
+        assertEquals(64, new OcclusionCache(64).capacity());
+        assertEquals(128, new OcclusionCache(100).capacity());
+        assertEquals(8, new OcclusionCache(1).capacity());
+    }
+
+    @Test
+    void generationChangeInvalidatesEverything() {
+        OcclusionCache cache = new OcclusionCache(64);
+        cache.setViewerSection(1L);
+        for (long key = 1; key <= 20; key++) cache.put(key, true);
+
+        // 同一区段不失效
+        cache.setViewerSection(1L);
+        assertEquals(OcclusionCache.OCCLUDED, cache.get(5L));
+
+        cache.setViewerSection(2L);
+        assertEquals(0, cache.size());
+        for (long key = 1; key <= 20; key++) {
+            assertEquals(OcclusionCache.MISS, cache.get(key));
+        }
+
+        cache.put(5L, false);
+        cache.invalidateAll();
+        assertEquals(OcclusionCache.MISS, cache.get(5L));
+    }
+
+    @Test
+    void removeIfDropsMatchingEntries() {
+        OcclusionCache cache = new OcclusionCache(256);
+        for (long key = 1; key <= 100; key++) cache.put(key, key % 2 == 0);
+        int before = cache.size();
+        int removed = cache.removeIf(key -> key % 10 == 0);
+        assertEquals(before - removed, cache.size());
+        for (long key = 1; key <= 100; key++) {
+            if (key % 10 == 0) assertEquals(OcclusionCache.MISS, cache.get(key));
+        }
+    }
+
+    @Test
+    void clockKeepsReferencedEntries() {
+        // 容量 8：只有一组，8 路
+        OcclusionCache cache = new OcclusionCache(8);
+        for (long key = 1; key <= 8; key++) cache.put(key, true);
+        assertEquals(8, cache.size());
+
+        // 访问除 3 以外的所有条目，新条目应淘汰唯一未被引用的 3
+        for (long key = 1; key <= 8; key++) {
+            if (key != 3) assertEquals(OcclusionCache.OCCLUDED, cache.get(key));
+        }
+        cache.put(100L, false);
+        assertEquals(8, cache.size());
+        assertEquals(OcclusionCache.MISS, cache.get(3L));
+        assertEquals(OcclusionCache.VISIBLE, cache.get(100L));
+        for (long key = 1; key <= 8; key++) {
+            if (key != 3) assertEquals(OcclusionCache.OCCLUDED, cache.get(key));
+        }
+    }
+
+    @Test
+    void clockEvictsWhenEverythingIsReferenced() {
+        OcclusionCache cache = new OcclusionCache(8);
+        for (long key = 1; key <= 8; key++) cache.put(key, true);
+        for (long key = 1; key <= 8; key++) cache.get(key);
+        // 全部被引用时指针转一圈清除引用位，仍然能腾出一个槽
+        cache.put(9L, false);
+        assertEquals(8, cache.size());
+        assertEquals(OcclusionCache.VISIBLE, cache.get(9L));
+    }
+
+    @Test
+    void concurrentReadersNeverSeeTornEntries() throws InterruptedException {
+        OcclusionCache cache = new OcclusionCache(1024);
+        int writers = 2;
+        int readers = 4;
+        int iterations = 200_000;
+        AtomicInteger bad = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[writers + readers];
+        // 键的奇偶决定它的值：偶数键总是遮挡、奇数键总是可见，读到相反的值说明条目被撕裂
+        for (int w = 0; w < writers; w++) {
+            int seed = w;
+            threads[w] = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < iterations; i++) {
+                    long key = (i * 7919L + seed) % 5000 + 1;
+                    cache.put(key, key % 2 == 0);
+                    if (i % 10_000 == 0) cache.invalidateAll();
+                }
+            });
+        }
+        for (int r = 0; r < readers; r++) {
+            int seed = r;
+            threads[writers + r] = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < iterations; i++) {
+                    long key = (i * 104_729L + seed) % 5000 + 1;
+                    int value = cache.get(key);
+                    if (value == OcclusionCache.MISS) continue;
+                    int expected = key % 2 == 0 ? OcclusionCache.OCCLUDED : OcclusionCache.VISIBLE;
+                    if (value != expected) bad.incrementAndGet();
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+        assertEquals(0, bad.get());
+        assertTrue(cache.size() <= cache.capacity());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
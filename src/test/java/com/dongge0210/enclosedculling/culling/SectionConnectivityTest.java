@@ -0,0 +1,97 @@
+package com.dongge0210.enclosedculling.culling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionConnectivityTest {
+    private static final int DOWN = 0, UP = 1, NORTH = 2, SOUTH = 3, WEST = 4, EAST = 5;
+
+    @Test
+    void emptyAndFullSections() {
+        assertEquals(SectionConnectivity.NONE, SectionConnectivity.compute(new long[64], 0));
+        long[] full = new long[64];
+        Arrays.fill(full, -1L);
+        assertEquals(SectionConnectivity.ALL, SectionConnectivity.compute(full, 0));
+    }
+
+    @Test
+    void oppositeFacesDifferInLowestBit() {
+        assertEquals(UP, SectionConnectivity.opposite(DOWN));
+        assertEquals(SOUTH, SectionConnectivity.opposite(NORTH));
+        assertEquals(WEST, SectionConnectivity.opposite(EAST));
+    }
+
+    @Test
+    void verticalShaftConnectsOnlyTopAndBottom() {
+        long[] bits = new long[64];
+        for (int y = 0; y < 16; y++) set(bits, 8, y, 8);
+        long mask = SectionConnectivity.compute(bits, 0);
+        assertTrue(SectionConnectivity.connects(mask, DOWN, UP));
+        assertTrue(SectionConnectivity.connects(mask, UP, DOWN));
+        assertTrue(SectionConnectivity.connects(mask, DOWN, DOWN));
+        for (int face = NORTH; face <= EAST; face++) {
+            assertFalse(SectionConnectivity.connects(mask, DOWN, face));
+            assertFalse(SectionConnectivity.connects(mask, face, UP));
+        }
+    }
+
+    @Test
+    void separateTunnelsDoNotConnectToEachOther() {
+        long[] bits = new long[64];
+        // 沿 x 方向的隧道，以及与之不相交、沿 z 方向的隧道
+        for (int x = 0; x < 16; x++) set(bits, x, 2, 2);
+        for (int z = 0; z < 16; z++) set(bits, 10, 10, z);
+        long mask = SectionConnectivity.compute(bits, 0);
+        assertTrue(SectionConnectivity.connects(mask, WEST, EAST));
+        assertTrue(SectionConnectivity.connects(mask, NORTH, SOUTH));
+        assertFalse(SectionConnectivity.connects(mask, WEST, NORTH));
+        assertFalse(SectionConnectivity.connects(mask, EAST, SOUTH));
+        assertFalse(SectionConnectivity.connects(mask, DOWN, UP));
+    }
+
+    @Test
+    void bendConnectsItsTwoFaces() {
+        long[] bits = new long[64];
+        // 从西面进入，在 x = 7 处转向南面
+        for (int x = 0; x <= 7; x++) set(bits, x, 5, 7);
+        for (int z = 7; z < 16; z++) set(bits, 7, 5, z);
+        long mask = SectionConnectivity.compute(bits, 0);
+        assertTrue(SectionConnectivity.connects(mask, WEST, SOUTH));
+        assertTrue(SectionConnectivity.connects(mask, SOUTH, WEST));
+        assertFalse(SectionConnectivity.connects(mask, WEST, EAST));
+        assertFalse(SectionConnectivity.connects(mask, NORTH, SOUTH));
+    }
+
+    @Test
+    void enclosedCavityIsIgnored() {
+        long[] bits = new long[64];
+        for (int x = 4; x < 12; x++) {
+            for (int y = 4; y < 12; y++) {
+                for (int z = 4; z < 12; z++) set(bits, x, y, z);
+            }
+        }
+        assertEquals(SectionConnectivity.NONE, SectionConnectivity.compute(bits, 0));
+    }
+
+    @Test
+    void readsTheRequestedLayer() {
+        // 第二层（从第 64 个字开始）是竖井，第一层为空
+        long[] bits = new long[128];
+        for (int y = 0; y < 16; y++) {
+            int index = (y << 8) | (8 << 4) | 8;
+            bits[64 + (index >>> 6)] |= 1L << (index & 63);
+        }
+        assertEquals(SectionConnectivity.NONE, SectionConnectivity.compute(bits, 0));
+        assertTrue(SectionConnectivity.connects(SectionConnectivity.compute(bits, 64), DOWN, UP));
+    }
+
+    private static void set(long[] bits, int x, int y, int z) {
+        int index = (y << 8) | (z << 4) | x;
+        bits[index >>> 6] |= 1L << (index & 63);
+    }
+}
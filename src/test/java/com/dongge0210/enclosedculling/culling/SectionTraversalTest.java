@@ -0,0 +1,77 @@
+package com.dongge0210.enclosedculling.culling;
+
+import com.dongge0210.enclosedculling.util.LongHashSet;
+import net.minecraft.core.SectionPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionTraversalTest {
+    private static final int DOWN = 0, UP = 1, WEST = 4, EAST = 5;
+
+    private final Map<Long, Long> world = new HashMap<>();
+
+    @Test
+    void walledSectionStopsPropagation() {
+        // 摄像机东侧是实心区段，再往东的开放区段只能经过它到达
+        put(0, 0, 0, SectionConnectivity.ALL);
+        put(1, 0, 0, SectionConnectivity.NONE);
+        put(2, 0, 0, SectionConnectivity.ALL);
+
+        LongHashSet reachable = run(SectionPos.asLong(0, 0, 0));
+        assertTrue(reachable.contains(SectionPos.asLong(1, 0, 0)));
+        assertFalse(reachable.contains(SectionPos.asLong(2, 0, 0)));
+    }
+
+    @Test
+    void lateEntryFaceIsMergedBeforeDequeue() {
+        // T 可以从 B（西面进入）和 A（下面进入）以相同的深度到达，但只有从下面进入才能从东面离开。
+        // B 先于 A 出队，若只记录第一个进入面，E 就会被误剔除
+        put(0, 0, 0, SectionConnectivity.ALL);
+        put(1, 0, 0, link(WEST, UP));      // A
+        put(0, 1, 0, link(DOWN, EAST));    // B
+        put(1, 1, 0, link(DOWN, EAST));    // T
+        put(2, 1, 0, SectionConnectivity.ALL);  // E
+
+        LongHashSet reachable = run(SectionPos.asLong(0, 0, 0));
+        assertTrue(reachable.contains(SectionPos.asLong(1, 1, 0)));
+        assertTrue(reachable.contains(SectionPos.asLong(2, 1, 0)));
+        assertFalse(reachable.contains(SectionPos.asLong(2, 0, 0)));
+    }
+
+    @Test
+    void stopsAtRadiusAndHeightLimits() {
+        LongHashSet reachable = new LongHashSet(16);
+        new SectionTraversal().run(SectionPos.asLong(0, 0, 0), 1, 0, 2,
+            (key, x, y, z) -> SectionConnectivity.ALL, reachable);
+        // 3 x 2 x 3 个区段
+        assertEquals(18, reachable.size());
+        assertFalse(reachable.contains(SectionPos.asLong(0, -1, 0)));
+        assertFalse(reachable.contains(SectionPos.asLong(2, 0, 0)));
+    }
+
+    private LongHashSet run(long cameraSection) {
+        LongHashSet reachable = new LongHashSet(16);
+        new SectionTraversal().run(cameraSection, 4, -4, 4,
+            (key, x, y, z) -> world.getOrDefault(key, SectionConnectivity.NONE), reachable);
+        return reachable;
+    }
+
+    private void put(int x, int y, int z, long connectivity) {
+        world.put(SectionPos.asLong(x, y, z), connectivity);
+    }
+
+    // 两个面互相连通，并且各自与自身连通
+    private static long link(int a, int b) {
+        return bit(a, b) | bit(b, a) | bit(a, a) | bit(b, b);
+    }
+
+    private static long bit(int from, int to) {
+        return 1L << (from * SectionConnectivity.FACE_COUNT + to);
+    }
+}
@@ -0,0 +1,66 @@
+package com.dongge0210.enclosedculling.culling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TickLodTest {
+
+    @Test
+    void intervalOfOneAlwaysRuns() {
+        for (long tick = -5; tick < 50; tick++) {
+            assertTrue(TickLod.isScheduled(tick, 42, 1));
+            assertTrue(TickLod.isScheduled(tick, 42, 0));
+        }
+    }
+
+    @Test
+    void runsExactlyOncePerInterval() {
+        for (int interval : new int[] {2, 4, 7, 20}) {
+            for (int id = -50; id < 50; id++) {
+                long last = Long.MIN_VALUE;
+                int runs = 0;
+                for (long tick = 1_000; tick < 1_000 + interval * 10L; tick++) {
+                    if (!TickLod.isScheduled(tick, id, interval)) continue;
+                    if (last != Long.MIN_VALUE) {
+                        // 两次执行之间跳过 interval - 1 个tick，补偿的tick数正好是它
+                        assertEquals(interval, tick - last);
+                    }
+                    last = tick;
+                    runs++;
+                }
+                assertEquals(10, runs);
+            }
+        }
+    }
+
+    @Test
+    void entitiesAreStaggeredAcrossTheInterval() {
+        int interval = 20;
+        int entities = 2_000;
+        int[] perTick = new int[interval];
+        for (int id = 0; id < entities; id++) {
+            for (int tick = 0; tick < interval; tick++) {
+                if (TickLod.isScheduled(tick, id, interval)) perTick[tick]++;
+            }
+        }
+        int expected = entities / interval;
+        for (int count : perTick) {
+            assertTrue(count > expected / 2 && count < expected * 2, "uneven stagger: " + count);
+        }
+    }
+
+    @Test
+    void countDownMatchesTickingOneByOne() {
+        for (int timer = 0; timer < 30; timer++) {
+            for (int missed = 0; missed < 30; missed++) {
+                int stepped = timer;
+                for (int i = 0; i < missed; i++) {
+                    if (stepped > 0) stepped--;
+                }
+                assertEquals(stepped, TickLod.countDown(timer, missed));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.dongge0210.enclosedculling.room;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomGroupsTest {
+
+    @Test
+    void unionMergesGroups() {
+        RoomGroups groups = new RoomGroups();
+        groups.add(1);
+        groups.add(2);
+        groups.add(3);
+        assertEquals(3, groups.getGroupCount());
+        assertNotEquals(groups.find(1), groups.find(2));
+
+        groups.union(1, 2);
+        assertEquals(groups.find(1), groups.find(2));
+        assertNotEquals(groups.find(1), groups.find(3));
+        assertEquals(2, groups.getGroupCount());
+
+        // 已连通的房间再次合并不改变群数
+        groups.union(2, 1);
+        assertEquals(2, groups.getGroupCount());
+        assertEquals(-1, groups.find(4));
+    }
+
+    @Test
+    void unionAddsUnknownRooms() {
+        RoomGroups groups = new RoomGroups();
+        groups.union(5, 6);
+        assertTrue(groups.contains(5));
+        assertTrue(groups.contains(6));
+        assertEquals(2, groups.getRoomCount());
+        assertEquals(1, groups.getGroupCount());
+    }
+
+    @Test
+    void removeKeepsRemainingMembersConnected() {
+        RoomGroups groups = new RoomGroups();
+        // 1 - 2 - 3 串联，移除中间的 2 后 1 和 3 仍在同一群
+        groups.union(1, 2);
+        groups.union(2, 3);
+        int group = groups.find(1);
+
+        groups.remove(2);
+        assertFalse(groups.contains(2));
+        assertEquals(-1, groups.find(2));
+        assertEquals(group, groups.find(1));
+        assertEquals(group, groups.find(3));
+        assertEquals(2, groups.getRoomCount());
+        assertEquals(1, groups.getGroupCount());
+
+        groups.remove(1);
+        groups.remove(3);
+        assertEquals(0, groups.getRoomCount());
+        assertEquals(0, groups.getGroupCount());
+    }
+
+    @Test
+    void rebuildSplitsGroupAfterInvalidate() {
+        RoomGroups groups = new RoomGroups();
+        // 1 - 2 - 3 串联，2 失效后按剩余的门户边重建，1 和 3 不再连通
+        Map<Integer, int[]> portals = new HashMap<>();
+        portals.put(1, new int[] {2});
+        portals.put(3, new int[] {2});
+        groups.union(1, 2);
+        groups.union(2, 3);
+        int group = groups.find(1);
+
+        groups.remove(2);
+        portals.put(1, new int[0]);
+        portals.put(3, new int[0]);
+        groups.rebuild(new int[] {1, 3}, portals::get);
+        assertEquals(group, groups.find(1));
+        assertNotEquals(groups.find(1), groups.find(3));
+        assertEquals(2, groups.getRoomCount());
+        assertEquals(2, groups.getGroupCount());
+    }
+
+    @Test
+    void rebuildKeepsGroupConnectedThroughOtherPortals() {
+        RoomGroups groups = new RoomGroups();
+        // 1 - 2 - 3 - 4 - 1 成环，2 失效后 1 和 3 仍经 4 连通
+        Map<Integer, int[]> portals = new HashMap<>();
+        portals.put(1, new int[] {4});
+        portals.put(3, new int[] {4});
+        portals.put(4, new int[] {1, 3});
+        groups.union(1, 2);
+        groups.union(2, 3);
+        groups.union(3, 4);
+        groups.union(4, 1);
+        int group = groups.find(1);
+
+        groups.remove(2);
+        groups.rebuild(new int[] {1, 3, 4}, portals::get);
+        assertEquals(group, groups.find(1));
+        assertEquals(group, groups.find(3));
+        assertEquals(group, groups.find(4));
+        assertEquals(1, groups.getGroupCount());
+    }
+
+    @Test
+    void removedIdCanBeAddedAgainAsNewGroup() {
+        RoomGroups groups = new RoomGroups();
+        groups.union(1, 2);
+        int oldGroup = groups.find(1);
+        groups.remove(1);
+        groups.add(1);
+        assertNotEquals(oldGroup, groups.find(1));
+        assertEquals(oldGroup, groups.find(2));
+        assertEquals(2, groups.getGroupCount());
+    }
+
+    @Test
+    void compactPreservesGroupsAndIds() {
+        RoomGroups groups = new RoomGroups();
+        int rooms = 3000;
+        // 按 id % 10 分成 10 个群
+        for (int id = 1; id <= rooms; id++) {
+            groups.add(id);
+            if (id > 10) groups.union(id, id - 10);
+        }
+        int[] groupIds = new int[10];
+        for (int g = 0; g < 10; g++) {
+            groupIds[g] = groups.find(g + 1);
+        }
+
+        // 移除大部分房间，触发重建
+        for (int id = 1; id <= rooms; id++) {
+            if (id % 3 != 0) groups.remove(id);
+        }
+        assertEquals(rooms / 3, groups.getRoomCount());
+        assertEquals(10, groups.getGroupCount());
+        for (int id = 1; id <= rooms; id++) {
+            if (id % 3 == 0) {
+                assertEquals(groupIds[(id - 1) % 10], groups.find(id), "room " + id);
+            } else {
+                assertFalse(groups.contains(id));
+            }
+        }
+
+        // 重建后新建的群ID不与已有的群ID重复
+        groups.add(rooms + 1);
+        int fresh = groups.find(rooms + 1);
+        for (int groupId : groupIds) {
+            assertNotEquals(groupId, fresh);
+        }
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        RoomGroups groups = new RoomGroups();
+        groups.union(1, 2);
+        groups.clear();
+        assertFalse(groups.contains(1));
+        assertEquals(0, groups.getRoomCount());
+        assertEquals(0, groups.getGroupCount());
+        groups.add(1);
+        assertTrue(groups.contains(1));
+    }
+}
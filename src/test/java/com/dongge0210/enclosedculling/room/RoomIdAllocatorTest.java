@@ -0,0 +1,73 @@
+package com.dongge0210.enclosedculling.room;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomIdAllocatorTest {
+
+    @Test
+    void allocatesSequentiallyFromOne() {
+        RoomIdAllocator ids = new RoomIdAllocator();
+        for (int expected = 1; expected <= 100; expected++) {
+            assertEquals(expected, ids.allocate());
+        }
+        assertEquals(100, ids.getLiveCount());
+    }
+
+    @Test
+    void releasedIdsAreReusedFirst() {
+        RoomIdAllocator ids = new RoomIdAllocator();
+        for (int i = 0; i < 10; i++) ids.allocate();
+        ids.release(3);
+        ids.release(7);
+        assertEquals(8, ids.getLiveCount());
+        // 空闲栈后进先出
+        assertEquals(7, ids.allocate());
+        assertEquals(3, ids.allocate());
+        assertEquals(11, ids.allocate());
+        assertEquals(11, ids.getLiveCount());
+    }
+
+    @Test
+    void ignoresIdsThatWereNeverAllocated() {
+        RoomIdAllocator ids = new RoomIdAllocator();
+        ids.allocate();
+        ids.release(0);
+        ids.release(-5);
+        ids.release(2);
+        assertEquals(1, ids.getLiveCount());
+        assertEquals(2, ids.allocate());
+    }
+
+    @Test
+    void freeStackGrows() {
+        RoomIdAllocator ids = new RoomIdAllocator();
+        for (int i = 0; i < 1000; i++) ids.allocate();
+        for (int id = 1; id <= 1000; id++) ids.release(id);
+        assertEquals(0, ids.getLiveCount());
+
+        Set<Integer> reused = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int id = ids.allocate();
+            assertTrue(id >= 1 && id <= 1000);
+            assertTrue(reused.add(id));
+        }
+        assertEquals(1001, ids.allocate());
+    }
+
+    @Test
+    void clearStartsOver() {
+        RoomIdAllocator ids = new RoomIdAllocator();
+        for (int i = 0; i < 5; i++) ids.allocate();
+        ids.release(2);
+        ids.clear();
+        assertEquals(0, ids.getLiveCount());
+        assertEquals(1, ids.allocate());
+        assertEquals(2, ids.allocate());
+    }
+}
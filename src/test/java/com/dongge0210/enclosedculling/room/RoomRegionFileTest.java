@@ -0,0 +1,149 @@
+package com.dongge0210.enclosedculling.room;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomRegionFileTest {
+    private static final int SECTOR = 4096;
+    // 槽位表占用的扇区数
+    private static final int HEADER_SECTORS = 2;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void slotsMapToChunkCoordinates() {
+        assertEquals(0, RoomRegionFile.slotOf(0, 0));
+        assertEquals(31, RoomRegionFile.slotOf(31, 0));
+        assertEquals(32, RoomRegionFile.slotOf(0, 1));
+        assertEquals(RoomRegionFile.slotOf(1, 2), RoomRegionFile.slotOf(33, 34));
+        assertEquals(RoomRegionFile.slotOf(31, 31), RoomRegionFile.slotOf(-1, -1));
+    }
+
+    @Test
+    void writtenDataSurvivesReopen() throws IOException {
+        Path file = dir.resolve("r.0.0.rooms");
+        byte[] first = payload(100, 1);
+        byte[] second = payload(SECTOR * 2, 2);
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            assertFalse(region.hasData(5));
+            assertNull(region.read(5));
+            region.write(5, ByteBuffer.wrap(first));
+            region.write(RoomRegionFile.SLOTS - 1, ByteBuffer.wrap(second));
+            assertArrayEquals(first, bytes(region.read(5)));
+        }
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            assertTrue(region.hasData(5));
+            assertArrayEquals(first, bytes(region.read(5)));
+            assertArrayEquals(second, bytes(region.read(RoomRegionFile.SLOTS - 1)));
+            assertNull(region.read(6));
+        }
+    }
+
+    @Test
+    void growingSlotMovesAndFreedSectorsAreReused() throws IOException {
+        Path file = dir.resolve("r.0.0.rooms");
+        byte[] a = payload(1000, 1);
+        byte[] b = payload(1000, 2);
+        byte[] largerA = payload(SECTOR + 100, 3);
+        byte[] c = payload(500, 4);
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            region.write(0, ByteBuffer.wrap(a));   // 扇区 2
+            region.write(1, ByteBuffer.wrap(b));   // 扇区 3
+            assertEquals(HEADER_SECTORS + 2, sectors(file));
+
+            // 槽位 0 需要两个扇区，原位置放不下，移到文件末尾并重新映射
+            region.write(0, ByteBuffer.wrap(largerA));
+            assertEquals(HEADER_SECTORS + 4, sectors(file));
+            assertArrayEquals(largerA, bytes(region.read(0)));
+            assertArrayEquals(b, bytes(region.read(1)));
+
+            // 首次适配复用槽位 0 让出的扇区，文件不再增长
+            region.write(2, ByteBuffer.wrap(c));
+            assertEquals(HEADER_SECTORS + 4, sectors(file));
+            assertArrayEquals(c, bytes(region.read(2)));
+            assertArrayEquals(largerA, bytes(region.read(0)));
+            assertArrayEquals(b, bytes(region.read(1)));
+        }
+    }
+
+    @Test
+    void shrinkingInPlaceReturnsTailSectors() throws IOException {
+        Path file = dir.resolve("r.0.0.rooms");
+        byte[] big = payload(SECTOR * 3, 1);
+        byte[] small = payload(10, 2);
+        byte[] other = payload(SECTOR + 1, 3);
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            region.write(0, ByteBuffer.wrap(big));     // 扇区 2..5
+            region.write(0, ByteBuffer.wrap(small));   // 原地写入，只保留扇区 2
+            region.write(1, ByteBuffer.wrap(other));   // 放进让出的扇区 3..4
+            assertEquals(HEADER_SECTORS + 4, sectors(file));
+            assertArrayEquals(small, bytes(region.read(0)));
+            assertArrayEquals(other, bytes(region.read(1)));
+        }
+    }
+
+    @Test
+    void emptyPayloadFreesSlot() throws IOException {
+        Path file = dir.resolve("r.0.0.rooms");
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            region.write(3, ByteBuffer.wrap(payload(100, 1)));
+            region.write(3, ByteBuffer.allocate(0));
+            assertFalse(region.hasData(3));
+            assertNull(region.read(3));
+        }
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            assertFalse(region.hasData(3));
+        }
+    }
+
+    @Test
+    void overlappingHeaderEntriesAreDropped() throws IOException {
+        Path file = dir.resolve("r.0.0.rooms");
+        byte[] a = payload(SECTOR * 2, 1);
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            region.write(0, ByteBuffer.wrap(a));
+            region.write(1, ByteBuffer.wrap(payload(100, 2)));
+        }
+        // 让槽位 1 的表项指向槽位 0 的扇区
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer entry = ByteBuffer.allocate(8).putInt(HEADER_SECTORS + 1).putInt(1).flip();
+            channel.write(entry, 8);
+        }
+        try (RoomRegionFile region = new RoomRegionFile(file)) {
+            assertArrayEquals(a, bytes(region.read(0)));
+            assertFalse(region.hasData(1));
+        }
+    }
+
+    private static byte[] payload(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+
+    private static long sectors(Path file) throws IOException {
+        return Files.size(file) / SECTOR;
+    }
+}
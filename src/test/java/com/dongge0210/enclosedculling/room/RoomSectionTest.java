@@ -0,0 +1,117 @@
+package com.dongge0210.enclosedculling.room;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomSectionTest {
+
+    @Test
+    void startsEmpty() {
+        RoomSection section = new RoomSection();
+        assertTrue(section.isEmpty());
+        for (int i = 0; i < RoomSection.VOLUME; i++) {
+            assertEquals(RoomSection.NO_ROOM, section.get(i));
+        }
+        assertNull(section.mask(1));
+    }
+
+    @Test
+    void paletteGrowthKeepsExistingValues() {
+        RoomSection section = new RoomSection();
+        int[] expected = new int[RoomSection.VOLUME];
+        // 房间数逐步增加，位宽从 1 位增长到 6 位，每次扩容后已有的值都应保留
+        for (int room = 1; room <= 40; room++) {
+            for (int i = room; i < RoomSection.VOLUME; i += 41) {
+                assertEquals(expected[i], section.set(i, room));
+                expected[i] = room;
+            }
+            for (int i = 0; i < RoomSection.VOLUME; i++) {
+                assertEquals(expected[i], section.get(i), "index " + i + " after room " + room);
+            }
+        }
+        assertFalse(section.isEmpty());
+    }
+
+    @Test
+    void randomWritesMatchPlainArray() {
+        RoomSection section = new RoomSection();
+        int[] expected = new int[RoomSection.VOLUME];
+        Random random = new Random(42);
+        for (int n = 0; n < 50_000; n++) {
+            int index = random.nextInt(RoomSection.VOLUME);
+            int room = random.nextInt(20);
+            assertEquals(expected[index], section.set(index, room));
+            expected[index] = room;
+        }
+        for (int i = 0; i < RoomSection.VOLUME; i++) {
+            assertEquals(expected[i], section.get(i));
+        }
+    }
+
+    @Test
+    void removeRoomClearsOnlyThatRoom() {
+        RoomSection section = new RoomSection();
+        for (int i = 0; i < RoomSection.VOLUME; i++) {
+            section.set(i, i % 3 == 0 ? 7 : i % 3 == 1 ? 8 : RoomSection.NO_ROOM);
+        }
+        int roomSevenCount = (RoomSection.VOLUME + 2) / 3;
+        assertEquals(roomSevenCount, section.removeRoom(7));
+        assertEquals(0, section.removeRoom(7));
+        assertEquals(0, section.removeRoom(99));
+        for (int i = 0; i < RoomSection.VOLUME; i++) {
+            assertEquals(i % 3 == 1 ? 8 : RoomSection.NO_ROOM, section.get(i));
+        }
+        assertNull(section.mask(7));
+
+        section.removeRoom(8);
+        assertTrue(section.isEmpty());
+    }
+
+    @Test
+    void freedPaletteSlotIsReused() {
+        RoomSection section = new RoomSection();
+        section.set(0, 1);
+        section.set(1, 2);
+        section.set(2, 3);
+        int bytes = section.estimateBytes();
+        section.removeRoom(2);
+        // 新房间复用归零的下标，不需要再扩大调色板或位宽
+        section.set(3, 4);
+        assertEquals(bytes, section.estimateBytes());
+        assertEquals(1, section.get(0));
+        assertEquals(RoomSection.NO_ROOM, section.get(1));
+        assertEquals(3, section.get(2));
+        assertEquals(4, section.get(3));
+    }
+
+    @Test
+    void maskAndForEachMatchMembership() {
+        RoomSection section = new RoomSection();
+        int[] members = {0, 63, 64, 1000, RoomSection.localIndex(15, 15, 15)};
+        for (int index : members) {
+            section.set(index, 5);
+        }
+        section.set(10, 6);
+
+        long[] mask = section.mask(5);
+        int bits = 0;
+        for (long word : mask) bits += Long.bitCount(word);
+        assertEquals(members.length, bits);
+        for (int index : members) {
+            assertTrue((mask[index >>> 6] & (1L << (index & 63))) != 0);
+        }
+
+        int[] visited = new int[1];
+        section.forEach(5, index -> {
+            assertEquals(5, section.get(index));
+            visited[0]++;
+        });
+        assertEquals(members.length, visited[0]);
+    }
+}
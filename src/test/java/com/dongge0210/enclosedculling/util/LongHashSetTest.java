@@ -0,0 +1,92 @@
+package com.dongge0210.enclosedculling.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTest {
+
+    @Test
+    void growsPastInitialCapacity() {
+        LongHashSet set = new LongHashSet(4);
+        for (long i = 1; i <= 10_000; i++) {
+            assertTrue(set.add(i * 31));
+        }
+        assertEquals(10_000, set.size());
+        for (long i = 1; i <= 10_000; i++) {
+            assertTrue(set.contains(i * 31));
+            assertFalse(set.add(i * 31));
+        }
+        assertFalse(set.contains(7));
+    }
+
+    @Test
+    void zeroIsStoredSeparately() {
+        LongHashSet set = new LongHashSet(4);
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+
+        set.clear();
+        assertFalse(set.contains(0L));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void matchesHashSetForRandomKeys() {
+        Random random = new Random(1234);
+        LongHashSet set = new LongHashSet(16);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            // 小范围内取值，保证有重复
+            long key = random.nextInt(20_000) - 10_000L;
+            assertEquals(expected.add(key), set.add(key));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long key = -10_000; key < 10_000; key++) {
+            assertEquals(expected.contains(key), set.contains(key));
+        }
+    }
+
+    @Test
+    void clearKeepsSetUsable() {
+        LongHashSet set = new LongHashSet(4);
+        for (long i = 1; i <= 1000; i++) set.add(i);
+        set.clear();
+        assertEquals(0, set.size());
+        for (long i = 1; i <= 1000; i++) {
+            assertFalse(set.contains(i));
+        }
+        for (long i = 1; i <= 1000; i++) {
+            assertTrue(set.add(i));
+        }
+        assertEquals(1000, set.size());
+    }
+
+    @Test
+    void copyFromReplacesContents() {
+        LongHashSet source = new LongHashSet(4);
+        for (long i = 0; i < 500; i++) source.add(i * 7);
+        LongHashSet target = new LongHashSet(4);
+        target.add(-1L);
+        target.copyFrom(source);
+        assertEquals(500, target.size());
+        assertFalse(target.contains(-1L));
+        for (long i = 0; i < 500; i++) {
+            assertTrue(target.contains(i * 7));
+        }
+        // 复制后两者互不影响，且仍能继续扩容
+        for (long i = 1; i <= 2000; i++) target.add(-i);
+        assertEquals(500, source.size());
+        assertFalse(source.contains(-5L));
+        assertTrue(target.contains(-2000L));
+    }
+}
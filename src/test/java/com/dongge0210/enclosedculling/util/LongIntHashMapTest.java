@@ -0,0 +1,53 @@
+package com.dongge0210.enclosedculling.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongIntHashMapTest {
+
+    @Test
+    void putIfAbsentKeepsFirstValue() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        assertEquals(-1, map.putIfAbsent(42L, 1, -1));
+        assertEquals(1, map.putIfAbsent(42L, 2, -1));
+        assertEquals(1, map.get(42L, -1));
+        assertEquals(-1, map.get(43L, -1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void zeroIsStoredSeparately() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        assertEquals(-1, map.get(0L, -1));
+        assertEquals(-1, map.putIfAbsent(0L, 7, -1));
+        assertEquals(7, map.putIfAbsent(0L, 8, -1));
+        assertEquals(7, map.get(0L, -1));
+
+        map.clear();
+        assertEquals(-1, map.get(0L, -1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void matchesHashMapForRandomKeys() {
+        Random random = new Random(1234);
+        LongIntHashMap map = new LongIntHashMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            // 小范围内取值，保证有重复
+            long key = random.nextInt(20_000) - 10_000L;
+            Integer previous = expected.putIfAbsent(key, i);
+            assertEquals(previous == null ? -1 : previous, map.putIfAbsent(key, i, -1));
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), map.get(entry.getKey(), -1));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.dongge0210.enclosedculling.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongQueueTest {
+
+    @Test
+    void keepsFifoOrderAcrossGrowth() {
+        LongQueue queue = new LongQueue(16);
+        for (long i = 0; i < 1000; i++) {
+            queue.enqueue(i);
+        }
+        assertEquals(1000, queue.size());
+        for (long i = 0; i < 1000; i++) {
+            assertEquals(i, queue.dequeue());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void growsWhileWrappedAround() {
+        LongQueue queue = new LongQueue(16);
+        ArrayDeque<Long> expected = new ArrayDeque<>();
+        // 先让头尾绕过缓冲区末尾，再在绕回状态下扩容
+        for (long i = 0; i < 12; i++) {
+            queue.enqueue(i);
+            expected.add(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals((long) expected.poll(), queue.dequeue());
+        }
+        for (long i = 12; i < 60; i++) {
+            queue.enqueue(i);
+            expected.add(i);
+        }
+        assertEquals(expected.size(), queue.size());
+        while (!expected.isEmpty()) {
+            assertEquals((long) expected.poll(), queue.dequeue());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void interleavedOperationsMatchDeque() {
+        LongQueue queue = new LongQueue(1);
+        ArrayDeque<Long> expected = new ArrayDeque<>();
+        long next = 0;
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < round % 7 + 1; i++) {
+                queue.enqueue(next);
+                expected.add(next++);
+            }
+            for (int i = 0; i < round % 5 && !expected.isEmpty(); i++) {
+                assertEquals((long) expected.poll(), queue.dequeue());
+            }
+            assertEquals(expected.size(), queue.size());
+        }
+        while (!expected.isEmpty()) {
+            assertEquals((long) expected.poll(), queue.dequeue());
+        }
+    }
+
+    @Test
+    void clearResetsQueue() {
+        LongQueue queue = new LongQueue(16);
+        for (long i = 0; i < 40; i++) queue.enqueue(i);
+        for (int i = 0; i < 5; i++) queue.dequeue();
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        queue.enqueue(99);
+        queue.enqueue(100);
+        assertEquals(99, queue.dequeue());
+        assertEquals(100, queue.dequeue());
+    }
+}